@@ -0,0 +1,89 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.qualys.feign.jaxrs;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of one client shared by many threads. Every operation spreads a batch of requests over the threads
+ * and waits for all of them, so the score scales with the threads for as long as the client does not contend.
+ * Every request is checked, the trial fails if any was encoded wrong.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrentClientBenchmark {
+    private static final int BATCH = 4096;
+
+    @Param({"1", "4", "16", "64", "256"})
+    public int threads;
+
+    @Param({"platform", "virtual"})
+    public String kind;
+
+    @Param({"false", "true"})
+    public boolean memoized;
+
+    private ConcurrentWorkload workload;
+    private ExecutorService executor;
+    private List<Callable<Void>> tasks;
+
+    @Setup
+    public void setUp() {
+        workload = new ConcurrentWorkload(memoized ? JAXRS3Profile.create().memoizeEncoding(64) : JAXRS3Profile.create());
+        executor = ConcurrentWorkload.executor(kind.equals("virtual"), threads);
+        tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int thread = i;
+            tasks.add(() -> {
+                for (int iteration = thread; iteration < BATCH; iteration += threads)
+                    workload.request(thread, iteration);
+                return null;
+            });
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        if (!workload.mismatches().isEmpty())
+            throw new IllegalStateException(workload.mismatches().size() + " requests encoded wrong, first: "
+                    + workload.mismatches().iterator().next());
+    }
+
+    /**
+     * @return requests sent, one operation being {@value #BATCH} requests
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int batch() throws Exception {
+        for (Future<Void> future : executor.invokeAll(tasks))
+            future.get();
+        return BATCH;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import com.sun.net.httpserver.HttpServer;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * End-to-end latency of {@link JAXRS3Profile} clients calling an in-process HTTP server under open-loop load.
+ * Requests are scheduled at a fixed rate whether or not earlier ones completed, and latency is measured from the
+ * time a request was scheduled to be sent, so stalls are charged to every request they delay instead of being hidden
+ * by a slower sending rate (coordinated omission). The service time, measured from the actual send, is reported next
+ * to it. The {@code stub} transport answers in process and shows the share of the library in the latency.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.qualys.feign.jaxrs.LatencyBenchmark \
+ *     -Dbenchmark=rates=500,2000,8000
+ * </pre>
+ *
+ * Arguments are {@code key=value} pairs: {@code rates} in requests per second, {@code seconds} measured per rate,
+ * {@code warmup} seconds per rate, {@code workers} sending threads, {@code transports} and {@code scenarios}.
+ */
+public class LatencyBenchmark {
+    private final Map<String, String> options = new LinkedHashMap<>(Map.of(
+            "rates", "500,2000,8000",
+            "seconds", "5",
+            "warmup", "2",
+            "workers", "64",
+            "transports", "stub,urlconnection,httpclient",
+            "scenarios", "get,headers,post"));
+
+    public static void main(String[] args) throws Exception {
+        LatencyBenchmark benchmark = new LatencyBenchmark();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator > 0)
+                benchmark.options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        benchmark.run();
+    }
+
+    private void run() throws Exception {
+        // without it responses wait for delayed acknowledgements of HttpURLConnection, some 40 ms each
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        server.createContext("/", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            byte[] response = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        ExecutorService serverExecutor = Executors.newFixedThreadPool(Integer.parseInt(options.get("workers")));
+        server.setExecutor(serverExecutor);
+        server.start();
+        String url = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+
+        System.out.printf("%-12s %-8s %7s %9s %9s %9s %9s %9s %9s %11s%n", "transport", "scenario", "rate",
+                "achieved", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "svc p99 ms");
+        try {
+            for (String transport : options.get("transports").split(",")) {
+                QueryResource client = JAXRS3Profile.create()
+                        .client(client(transport))
+                        .target(QueryResource.class, url);
+                for (String scenario : options.get("scenarios").split(",")) {
+                    Consumer<Integer> call = scenario(client, scenario);
+                    for (String rate : options.get("rates").split(",")) {
+                        measure(call, Integer.parseInt(rate), Integer.parseInt(options.get("warmup")));
+                        Result result = measure(call, Integer.parseInt(rate), Integer.parseInt(options.get("seconds")));
+                        System.out.printf("%-12s %-8s %7s %9.0f %9.3f %9.3f %9.3f %9.3f %9.3f %11.3f%n", transport,
+                                scenario, rate, result.achieved, result.latency(50), result.latency(90),
+                                result.latency(99), result.latency(99.9), result.latency(100), result.service(99));
+                    }
+                }
+            }
+        } finally {
+            server.stop(0);
+            serverExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Sends requests at the rate for the given time from a pool of workers. The request due at {@code start + i / rate}
+     * is handed to the workers at that time; when they are all busy it waits in the queue, and the wait counts.
+     */
+    private Result measure(Consumer<Integer> call, int rate, int seconds) throws InterruptedException {
+        int requests = rate * seconds;
+        long[] latencies = new long[requests];
+        long[] services = new long[requests];
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(requests);
+        ExecutorService workers = Executors.newFixedThreadPool(Integer.parseInt(options.get("workers")));
+
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            long intended = start + i * interval;
+            long delay;
+            while ((delay = intended - System.nanoTime()) > 0)
+                LockSupport.parkNanos(delay);
+
+            int request = i;
+            workers.execute(() -> {
+                long sent = System.nanoTime();
+                try {
+                    call.accept(request);
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                }
+                long received = System.nanoTime();
+                latencies[request] = received - intended;
+                services[request] = received - sent;
+                done.countDown();
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        workers.shutdown();
+
+        if (failures.get() > 0)
+            throw new IllegalStateException(failures.get() + " of " + requests + " requests failed");
+        return new Result(requests * (double) TimeUnit.SECONDS.toNanos(1) / elapsed, latencies, services);
+    }
+
+    private static Consumer<Integer> scenario(QueryResource client, String scenario) {
+        switch (scenario) {
+            case "get":
+                return i -> {
+                    QueryResource.PagingBeanParam paging = new QueryResource.PagingBeanParam();
+                    paging.setOffset(i);
+                    paging.setLimit(50);
+                    QueryResource.FilterBeanParam filter = new QueryResource.FilterBeanParam();
+                    filter.setName("name " + (i & 63));
+                    filter.setTenant("tenant");
+                    filter.setPaging(paging);
+                    QueryResource.NestedBeanParam bean = new QueryResource.NestedBeanParam();
+                    bean.setId(i);
+                    bean.setFilter(filter);
+                    client.withNested(bean);
+                };
+            case "headers":
+                return i -> {
+                    QueryResource.PathBeanParam path = new QueryResource.PathBeanParam();
+                    path.setId1(i);
+                    path.setId2(i & 7);
+                    QueryResource.QueryParamBean params = new QueryResource.QueryParamBean();
+                    params.setParam1("one");
+                    params.setParam2("two " + i);
+                    QueryResource.HeaderBeanParam headers = new QueryResource.HeaderBeanParam();
+                    headers.setTestParam1("Bearer " + "x".repeat(256));
+                    headers.setTestParam2("trace-" + i);
+                    client.withMultiple(path, "query", params, headers);
+                };
+            case "post":
+                return i -> {
+                    QueryResource.FormBeanParam bean = new QueryResource.FormBeanParam();
+                    bean.setVersion("2");
+                    bean.setName("J\u00f6rg " + i);
+                    bean.setTags(Arrays.asList("a", "b&c", "tag " + (i & 15)));
+                    client.withForm(bean, "x".repeat(1024));
+                };
+            default:
+                throw new IllegalArgumentException("Unknown scenario " + scenario);
+        }
+    }
+
+    private static Client client(String transport) {
+        switch (transport) {
+            case "stub":
+                return (request, options) -> Response.builder()
+                        .request(request)
+                        .status(200)
+                        .reason("OK")
+                        .headers(Map.of())
+                        .body("ok", StandardCharsets.UTF_8)
+                        .build();
+            case "urlconnection":
+                return new Client.Default(null, null);
+            case "httpclient":
+                return new JdkHttpClient();
+            default:
+                throw new IllegalArgumentException("Unknown transport " + transport);
+        }
+    }
+
+    /**
+     * Sends feign requests with {@link HttpClient}, the JDK client being the other transport available without
+     * further dependencies.
+     */
+    private static final class JdkHttpClient implements Client {
+        private final HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        @Override
+        public Response execute(Request request, Request.Options options) throws IOException {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(request.url()))
+                    .method(request.httpMethod().name(), request.body() != null
+                            ? HttpRequest.BodyPublishers.ofByteArray(request.body())
+                            : HttpRequest.BodyPublishers.noBody());
+            request.headers().forEach((name, values) -> {
+                if (!name.equalsIgnoreCase("Content-Length"))
+                    values.forEach(value -> builder.header(name, value));
+            });
+
+            try {
+                HttpResponse<byte[]> response = client.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+                Map<String, Collection<String>> headers = new LinkedHashMap<>();
+                response.headers().map().forEach((name, values) -> headers.put(name, List.copyOf(values)));
+                return Response.builder()
+                        .request(request)
+                        .status(response.statusCode())
+                        .reason("")
+                        .headers(headers)
+                        .body(response.body())
+                        .build();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static final class Result {
+        final double achieved;
+        final long[] latencies;
+        final long[] services;
+
+        Result(double achieved, long[] latencies, long[] services) {
+            this.achieved = achieved;
+            this.latencies = latencies.clone();
+            this.services = services.clone();
+            Arrays.sort(this.latencies);
+            Arrays.sort(this.services);
+        }
+
+        double latency(double percentile) {
+            return millis(latencies, percentile);
+        }
+
+        double service(double percentile) {
+            return millis(services, percentile);
+        }
+
+        private static double millis(long[] sorted, double percentile) {
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import jakarta.ws.rs.BeanParam;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Heap retained per client and per {@code @BeanParam} transformer, measured as the growth of the used heap after
+ * building many of them and collecting garbage. Run with a fixed heap to keep the collector from resizing it:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.qualys.feign.jaxrs.MetadataFootprint -Dbenchmark=2000
+ * </pre>
+ */
+public class MetadataFootprint {
+    public static void main(String[] args) {
+        int count = args.length > 0 && args[0].matches("\\d+") ? Integer.parseInt(args[0]) : 2000;
+
+        List<Method> beanMethods = new ArrayList<>();
+        for (Method method : QueryResource.class.getMethods()) {
+            for (Parameter parameter : method.getParameters()) {
+                if (parameter.isAnnotationPresent(BeanParam.class)) {
+                    beanMethods.add(method);
+                    break;
+                }
+            }
+        }
+
+        BeanParamTransformerFactory factory = new BeanParamTransformerFactory();
+        BeanParamInvocationHandlerFactory handlers = new BeanParamInvocationHandlerFactory();
+        long transformers = measure(count, () -> {
+            List<BeanParamTransformer> created = new ArrayList<>();
+            for (Method method : beanMethods) {
+                int[] indexes = handlers.beanParamIndexes(method);
+                Type[] types = new Type[indexes.length];
+                for (int i = 0; i < indexes.length; i++)
+                    types[i] = method.getParameterTypes()[indexes[i]];
+                created.add(factory.createTransformer(types, indexes));
+            }
+            return created;
+        });
+        long clients = measure(count, () -> JAXRS3Profile.create().target(QueryResource.class, "http://localhost"));
+
+        int methods = QueryResource.class.getMethods().length;
+        System.out.printf("transformer: %d bytes per @BeanParam method (%d methods)%n",
+                transformers / beanMethods.size(), beanMethods.size());
+        System.out.printf("client:      %d bytes per method (%d methods)%n", clients / methods, methods);
+    }
+
+    /**
+     * @return bytes retained by one result of the supplier
+     */
+    private static long measure(int count, Supplier<Object> supplier) {
+        // warm up, so that class metadata and caches are in place before the baseline
+        for (int i = 0; i < 100; i++)
+            supplier.get();
+
+        List<Object> retained = new ArrayList<>(count);
+        long before = usedAfterGc();
+        for (int i = 0; i < count; i++)
+            retained.add(supplier.get());
+        long after = usedAfterGc();
+        if (retained.size() != count)
+            throw new IllegalStateException();
+        return (after - before) / count;
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
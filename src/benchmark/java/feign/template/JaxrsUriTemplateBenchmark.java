@@ -0,0 +1,66 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package feign.template;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares expansion of typical identifier and filter values by {@link JaxrsUriTemplate}
+ * with feign's general {@link UriTemplate}, which encodes every value through the charset.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JaxrsUriTemplateBenchmark {
+    private static final String TEMPLATE = "/tenants/{tenant}/items/{id}?status={status}&name={name}";
+
+    @Param({"ids", "escaped"})
+    public String values;
+
+    private Map<String, String> variables;
+    private Template jaxrs;
+    private Template general;
+
+    @Setup
+    public void setUp() {
+        variables = values.equals("ids")
+                ? Map.of("tenant", "acme", "id", "3f2504e0-4f89-11d3-9a0c-0305e82c3301", "status", "ACTIVE",
+                "name", "item_42")
+                : Map.of("tenant", "acme corp", "id", "42", "status", "ACTIVE,ARCHIVED", "name", "item #42");
+        jaxrs = JaxrsUriTemplate.create(TEMPLATE, true, StandardCharsets.UTF_8);
+        general = UriTemplate.create(TEMPLATE, true, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String jaxrsUriTemplate() {
+        return jaxrs.expand(variables);
+    }
+
+    @Benchmark
+    public String uriTemplate() {
+        return general.expand(variables);
+    }
+}
@@ -22,6 +22,8 @@ import feign.RequestTemplate;
 import feign.codec.EncodeException;
 import feign.codec.Encoder;
 import feign.template.*;
+import jakarta.ws.rs.FormParam;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.QueryParam;
 
@@ -32,18 +34,48 @@ import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static jakarta.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+
 /**
  * Created by sskrla on 10/12/15.
  */
 class BeanParamEncoder implements Encoder {
     final Encoder delegate;
+    /**
+     * Compresses the encoded bodies of selected methods, {@code null} if bodies are never compressed.
+     */
+    final BodyCompression compression;
+    /**
+     * Encoders bound to methods by the content type they consume, {@code null} if bodies all go to the delegate.
+     */
+    final MediaTypeEncoders encoders;
+    /**
+     * Whether query parameters are sent in canonical order, see {@link QueryOrder}.
+     */
+    final boolean canonicalQueries;
 
     public BeanParamEncoder() {
-        this.delegate = new Encoder.Default();
+        this(new Encoder.Default());
     }
 
     public BeanParamEncoder(Encoder delegate) {
+        this(delegate, null);
+    }
+
+    BeanParamEncoder(Encoder delegate, BodyCompression compression) {
+        this(delegate, compression, null);
+    }
+
+    BeanParamEncoder(Encoder delegate, BodyCompression compression, MediaTypeEncoders encoders) {
+        this(delegate, compression, encoders, false);
+    }
+
+    BeanParamEncoder(Encoder delegate, BodyCompression compression, MediaTypeEncoders encoders,
+                     boolean canonicalQueries) {
         this.delegate = delegate;
+        this.compression = compression;
+        this.encoders = encoders;
+        this.canonicalQueries = canonicalQueries;
     }
 
     @Override
@@ -52,16 +84,20 @@ class BeanParamEncoder implements Encoder {
             template.methodMetadata().indexToExpander(new HashMap<>());
 
         if (object instanceof Object[] objects && objects.length > 0) {
-            Object[] withoutPathAndQueryParams = getWithoutPathAndQueryParams(objects, template);
-            if (withoutPathAndQueryParams.length < 1) return;
-            for (Object param : withoutPathAndQueryParams) {
-                if (param != null) {
-                    if (param instanceof EncoderContext ctx)
-                        resolveEncoderContext(ctx, template);
-                    else resolve(param, template);
-                }
+            List<List<Annotation>> paramAnnotations = getAnnotations(template);
+            encodeFormParams(objects, paramAnnotations, template);
+            for (int i = 0; i < objects.length; i++) {
+                Object param = objects[i];
+                if (param == null || !isEncoded(param.getClass(), paramAnnotations.get(i)))
+                    continue;
+                if (param instanceof EncoderContext ctx)
+                    resolveEncoderContext(ctx, template);
+                else resolve(param, isQueryMap(param.getClass(), paramAnnotations.get(i)), template);
             }
         }
+
+        if (compression != null)
+            compression.apply(template);
     }
 
     private void resolveEncoderContext(EncoderContext ctx, RequestTemplate template) {
@@ -72,23 +108,71 @@ class BeanParamEncoder implements Encoder {
         }
     }
 
-    private void resolve(Object param, RequestTemplate template) {
-        this.delegate.encode(param, param.getClass(), template);
+    /**
+     * @param queryMap whether the argument is a {@code @QueryParam} map, which goes to the query with the default
+     *                 encoder whatever the media type the method consumes
+     */
+    private void resolve(Object param, boolean queryMap, RequestTemplate template) {
+        if (canonicalQueries && param instanceof Map<?, ?> map)
+            param = QueryOrder.sort(map);
+        Encoder encoder = encoders != null && !queryMap
+                ? encoders.forMethod(template.methodMetadata().method(), delegate)
+                : delegate;
+        encoder.encode(param, param.getClass(), template);
         if (template.queries().size() == 1 && param instanceof Map<?, ?> map) {
             encodeQueryMapParam(template, map, false);
         }
     }
 
-    private Object[] getWithoutPathAndQueryParams(Object[] params, RequestTemplate template) {
-        List<Object> noPathAndQueryParams = new ArrayList<>();
-        List<List<Annotation>> paramAnnotations = getAnnotations(template);
+    /**
+     * @return whether the argument is encoded: a body, a bean or a query map, path, header, form and plain query
+     * parameters being expanded by feign
+     */
+    /**
+     * @return whether an argument of the type is handed to the encoder rather than expanded into the templates
+     */
+    static boolean isEncoded(Class<?> type, List<Annotation> annotations) {
+        return annotations.stream().noneMatch(obj -> obj instanceof PathParam || obj instanceof FormParam ||
+                obj instanceof HeaderParam ||
+                (obj instanceof QueryParam && !Map.class.isAssignableFrom(type)));
+    }
+
+    static boolean isQueryMap(Class<?> type, List<Annotation> annotations) {
+        return Map.class.isAssignableFrom(type) && annotations.stream().anyMatch(obj -> obj instanceof QueryParam);
+    }
+
+    /**
+     * Writes {@code @FormParam} values of beans and of the method itself directly as a form body.
+     * Runs before any template expansion, which escapes values in place.
+     */
+    private void encodeFormParams(Object[] params, List<List<Annotation>> paramAnnotations, RequestTemplate template) {
+        FormBodyWriter form = null;
         for (int i = 0; i < params.length; i++) {
             Object param = params[i];
-            if (paramAnnotations.get(i).stream().noneMatch(obj -> obj instanceof PathParam ||
-                    (obj instanceof QueryParam && !(param instanceof Map))))
-                noPathAndQueryParams.add(params[i]);
+            if (param instanceof EncoderContext ctx) {
+                if (ctx.transformer == null || ctx.transformer.formParams.length == 0)
+                    continue;
+                if (form == null)
+                    form = new FormBodyWriter();
+                for (String name : ctx.transformer.formParams)
+                    form.field(name, ctx.values.get(name));
+            } else if (param != null) {
+                for (Annotation annotation : paramAnnotations.get(i)) {
+                    if (annotation instanceof FormParam formParam) {
+                        if (form == null)
+                            form = new FormBodyWriter();
+                        form.field(formParam.value(), param);
+                    }
+                }
+            }
         }
-        return noPathAndQueryParams.toArray(new Object[0]);
+
+        if (form == null || form.isEmpty())
+            return;
+
+        template.body(form.toByteArray(), StandardCharsets.UTF_8);
+        if (!template.headers().containsKey(CONTENT_TYPE))
+            template.header(CONTENT_TYPE, FormBodyWriter.CONTENT_TYPE);
     }
 
     private List<List<Annotation>> getAnnotations(RequestTemplate template) {
@@ -100,7 +184,7 @@ class BeanParamEncoder implements Encoder {
 
     private void encodeQueryMapParam(RequestTemplate template, Map<?, ?> params, boolean runEncoder) {
         if (runEncoder)
-            this.delegate.encode(params, Map.class, template);
+            this.delegate.encode(canonicalQueries ? QueryOrder.sort(params) : params, Map.class, template);
 
         if (!template.queries().isEmpty()) {
             String paramTemplateName = template.getRequestVariables().iterator().next();
@@ -114,55 +198,52 @@ class BeanParamEncoder implements Encoder {
     private static final Pattern ESCAPED_CURLY_BRACES = Pattern.compile("%7B(\\w+)%7D");
 
     private void resolve(RequestTemplate mutable, EncoderContext ctx) {
-        Map<String, Object> variables = ctx.values;
-
-        if (ctx.transformer != null && ctx.transformer.queryParams() != null)
-            for (String name : ctx.transformer.queryParams()) {
+        if (ctx.transformer != null)
+            for (String name : ctx.transformer.queryParams) {
                 if (!mutable.queries().containsKey(name))
                     mutable.query(name, "{" + name + "}");
             }
 
-        JaxrsUriTemplate uriTemplate = JaxrsUriTemplate.create(removeEmptyQueryParameters(mutable.url(), ctx), !mutable.decodeSlash(),
-                mutable.requestCharset());
+        EncodedFragments fragments = null;
+        boolean cacheable = ctx.fragments != null && EncodedFragments.isCacheKey(ctx.values);
+        if (cacheable)
+            fragments = ctx.fragments.getIfPresent(ctx.values);
+        if (fragments == null) {
+            fragments = encodeFragments(mutable, ctx);
+            if (cacheable)
+                ctx.fragments.put(ctx.values, fragments);
+        }
+
+        fragments.applyTo(mutable);
+    }
 
-        /// escape opening curly brace before expand
-        variables.forEach((key, value) -> {
-            if (value instanceof String valueString) {
-                String escapedValue = valueString.replace("{", "%7B");
-                variables.put(key, escapedValue);
+    private EncodedFragments encodeFragments(RequestTemplate mutable, EncoderContext ctx) {
+        RequestPrototype prototype = ctx.prototype != null
+                ? ctx.prototype.get(mutable, ctx.transformer, canonicalQueries)
+                : RequestPrototype.compile(mutable, ctx.transformer, canonicalQueries);
+
+        /// escape opening curly brace before expand, on a copy: the values may be shared as a cache key
+        Map<String, Object> variables = ctx.values;
+        for (Map.Entry<String, Object> entry : ctx.values.entrySet()) {
+            if (entry.getValue() instanceof String valueString && valueString.indexOf('{') >= 0) {
+                if (variables == ctx.values)
+                    variables = new HashMap<>(ctx.values);
+                variables.put(entry.getKey(), valueString.replace("{", "%7B"));
             }
-        });
+        }
 
-        String expanded = uriTemplate.expand(variables);
+        String expanded = prototype.expandUri(ctx.values, variables, ctx);
 
         /// unescape opening curly brace and params after expand
-        if (expanded != null) {
+        if (expanded != null && expanded.contains("7B")) {
             expanded = ESCAPED_CURLY_BRACES.matcher(expanded).replaceAll("{$1}").replace("%257B", "%7B");
         }
 
-        mutable.uri(expanded);
-
-        /// expand headers
-        Map<String, Collection<String>> headers = mutable.headers();
-        mutable.headers(Collections.emptyMap());
-        for (Map.Entry<String, Collection<String>> header : headers.entrySet()) {
-            HeaderTemplate headerTemplate = HeaderTemplate.create(header.getKey(), header.getValue());
-            String expandedHeader = headerTemplate.expand(variables);
-            if (!expandedHeader.isEmpty())
-                mutable.header(headerTemplate.getName(), expandedHeader);
-            else if (!isFromBeanParam(headerTemplate.getName(), ctx))
-                mutable.header(headerTemplate.getName(), headerTemplate.getValues());
-        }
+        return new EncodedFragments(expanded, prototype.expandHeaders(variables));
     }
 
     private static boolean isFromBeanParam(String paramName, EncoderContext ctx) {
-        if (ctx.transformer != null)
-            for (String[] names : ctx.transformer.names)
-                for (String name : names)
-                    if (name.equals(paramName))
-                        return true;
-
-        return false;
+        return RequestPrototype.isFromBeanParam(paramName, ctx.transformer);
     }
 
     public static String removeEmptyQueryParameters(String template, EncoderContext ctx) {
@@ -179,10 +260,25 @@ class BeanParamEncoder implements Encoder {
 
             if (isFromBeanParam(key, ctx) && (value == null || String.valueOf(value).isEmpty())) {
                 // Если значение переменной пусто или не задано, удаляем из шаблона
-                template = template.replaceAll("[&]?" + key + "=\\{" + key + "}", "");
+                template = removeQueryParameter(template, key);
             }
         }
 
+        return removeDanglingSeparators(template);
+    }
+
+    static String removeQueryParameters(String template, Collection<String> names) {
+        for (String name : names)
+            template = removeQueryParameter(template, name);
+
+        return removeDanglingSeparators(template);
+    }
+
+    private static String removeQueryParameter(String template, String name) {
+        return template.replaceAll("[&]?" + name + "=\\{" + name + "}", "");
+    }
+
+    private static String removeDanglingSeparators(String template) {
         template = template.replace("?&", "?"); // Исправляем случай "?&" после удаления первого параметра
         template = template.replaceAll("\\?$", ""); // Удаляем висячий "?" в конце, если все параметры были удалены
 
@@ -18,81 +18,285 @@
 
 package com.qualys.feign.jaxrs;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import feign.InvocationHandlerFactory;
+import feign.MethodMetadata;
+import feign.RequestTemplate;
 import feign.Target;
 
 import jakarta.ws.rs.BeanParam;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.QueryParam;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * Created by sskrla on 10/12/15.
  */
 class BeanParamInvocationHandlerFactory implements InvocationHandlerFactory {
+    private static final Pattern VARIABLE = Pattern.compile("\\{([^}]+)}");
+
     final InvocationHandlerFactory delegate;
-    final BeanParamTransformerFactory factory = new BeanParamTransformerFactory();
+    final BeanParamTransformerFactory factory;
+    /**
+     * Maximum number of encoded fragments memoized per method, {@code 0} disables memoization.
+     */
+    final long fragmentCacheSize;
+    /**
+     * Metadata the contract parsed for the client being built on the current thread, by method, taken over by
+     * {@link #create}; unset if not recorded. Bean properties the templates of a method do not use are left out of its
+     * transformer, {@link ExplainPlan} shows the templates.
+     */
+    final ThreadLocal<Map<Method, MethodMetadata>> parsed = new ThreadLocal<>();
+    /**
+     * Handlers of a client warmed up on the current thread by method, taken over by {@link #create}; unset if none: the
+     * client created next reuses their transformers and request prototypes instead of creating its own cold ones.
+     */
+    final ThreadLocal<Map<Method, BeanParamMethodHandler>> warmed = new ThreadLocal<>();
+    /**
+     * Whether the handlers of a client are created in parallel on the common {@code ForkJoinPool}.
+     */
+    final boolean parallel;
 
     public BeanParamInvocationHandlerFactory() {
-        this.delegate = new InvocationHandlerFactory.Default();
+        this(new InvocationHandlerFactory.Default());
     }
 
     public BeanParamInvocationHandlerFactory(InvocationHandlerFactory delegate) {
+        this(delegate, new BeanParamTransformerFactory());
+    }
+
+    BeanParamInvocationHandlerFactory(InvocationHandlerFactory delegate, BeanParamTransformerFactory factory) {
+        this(delegate, factory, 0);
+    }
+
+    BeanParamInvocationHandlerFactory(InvocationHandlerFactory delegate, BeanParamTransformerFactory factory,
+                                      long fragmentCacheSize) {
+        this(delegate, factory, fragmentCacheSize, false);
+    }
+
+    BeanParamInvocationHandlerFactory(InvocationHandlerFactory delegate, BeanParamTransformerFactory factory,
+                                      long fragmentCacheSize, boolean parallel) {
         this.delegate = delegate;
+        this.factory = factory;
+        this.fragmentCacheSize = fragmentCacheSize;
+        this.parallel = parallel;
     }
 
     public InvocationHandler create(Target target, Map<Method, MethodHandler> dispatch) {
-        Map<Method, MethodHandler> overriddenDispatch = new HashMap<>();
-        for (Map.Entry<Method, MethodHandler> entry : dispatch.entrySet()) {
-            int index = beanParamIndex(entry.getKey());
-            if (index > -1) {
-                overriddenDispatch.put(
-                        entry.getKey(),
-                        new BeanParamMethodHandler(
-                                entry.getValue(),
-                                factory.createTransformer(entry.getKey().getParameterTypes()[index], index),
-                                index));
-            } else {
-                overriddenDispatch.put(entry.getKey(), entry.getValue());
+        // feign parses the contract of a client right before creating its handler, on the same thread
+        Map<Method, MethodMetadata> metadata = parsed.get();
+        parsed.remove();
+        Map<Method, BeanParamMethodHandler> warmedHandlers = warmed.get();
+        warmed.remove();
+
+        Set<Map.Entry<Method, MethodHandler>> entries = dispatch.entrySet();
+        Map<Method, MethodHandler> overriddenDispatch = (parallel ? entries.parallelStream() : entries.stream())
+                .collect(Collectors.toMap(Map.Entry::getKey,
+                        entry -> handler(entry.getKey(), entry.getValue(), metadata, warmedHandlers)));
+
+        return new BeanParamInvocationHandler(delegate.create(target, overriddenDispatch), target, overriddenDispatch,
+                metadata);
+    }
+
+    private MethodHandler handler(Method method, MethodHandler handler, Map<Method, MethodMetadata> metadata,
+                                  Map<Method, BeanParamMethodHandler> warmedHandlers) {
+        int[] indexes = beanParamIndexes(method);
+        if (indexes.length == 0)
+            return handler;
+
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        Type[] beanTypes = new Type[indexes.length];
+        for (int i = 0; i < indexes.length; i++)
+            beanTypes[i] = parameterTypes[indexes[i]];
+
+        BeanParamMethodHandler warm = warmedHandlers != null ? warmedHandlers.get(method) : null;
+        if (warm != null) {
+            // compilations of warm-up requests are not the client's, its fragment cache starts empty
+            warm.prototype.compilations.set(0);
+            return new BeanParamMethodHandler(handler, warm.transformer, indexes, createFragmentCache(method),
+                    warm.prototype);
+        }
+
+        MethodMetadata methodMetadata = metadata != null ? metadata.get(method) : null;
+        Set<String> variables = methodMetadata != null ? variables(methodMetadata.template()) : null;
+        return new BeanParamMethodHandler(
+                handler,
+                factory.createTransformer(beanTypes, indexes, variables),
+                indexes,
+                createFragmentCache(method),
+                new RequestPrototype.Slot(isTemplateDeterminedByBeans(method)));
+    }
+
+    /**
+     * Variables of the url, queries and headers of a template. Unlike {@link RequestTemplate#getRequestVariables()}
+     * this works for templates without an uri, left so by methods without {@code @Path}.
+     */
+    static Set<String> variables(RequestTemplate template) {
+        Set<String> variables = new HashSet<>();
+        Matcher matcher = VARIABLE.matcher(template.url());
+        while (matcher.find())
+            variables.add(matcher.group(1));
+        for (Collection<String> values : template.headers().values()) {
+            for (String value : values) {
+                matcher = VARIABLE.matcher(value);
+                while (matcher.find())
+                    variables.add(matcher.group(1));
             }
         }
+        return variables;
+    }
+
+    private Cache<Map<String, Object>, EncodedFragments> createFragmentCache(Method method) {
+        if (fragmentCacheSize <= 0 || !isTemplateDeterminedByBeans(method))
+            return null;
+        return CacheBuilder.newBuilder().maximumSize(fragmentCacheSize).recordStats().build();
+    }
 
-        return delegate.create(target, overriddenDispatch);
+    /**
+     * Expanded fragments depend on the bean values alone when every other parameter is left to feign's own
+     * template resolution. Bodies, form parameters and query maps are written by the encoder into the very
+     * template the fragments are expanded from, so methods having them are not memoized.
+     */
+    static boolean isTemplateDeterminedByBeans(Method method) {
+        Parameter[] parameters = method.getParameters();
+        for (Parameter parameter : parameters) {
+            if (parameter.isAnnotationPresent(BeanParam.class)
+                    || parameter.isAnnotationPresent(PathParam.class)
+                    || parameter.isAnnotationPresent(HeaderParam.class)
+                    || parameter.isAnnotationPresent(QueryParam.class) && !Map.class.isAssignableFrom(parameter.getType()))
+                continue;
+            return false;
+        }
+        return true;
     }
 
-    int beanParamIndex(Method method) {
+    int[] beanParamIndexes(Method method) {
         Annotation[][] annotations = method.getParameterAnnotations();
+        List<Integer> indexes = new ArrayList<>();
         for (int i = 0; i < annotations.length; i++) {
             for (Annotation annotation : annotations[i]) {
                 if (BeanParam.class.isAssignableFrom(annotation.getClass()))
-                    return i;
+                    indexes.add(i);
+            }
+        }
+
+        return indexes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Passes invocations through, keeping what the client was built from so that {@link ExplainPlan} can find it.
+     * Answers {@code equals}, {@code hashCode} and {@code toString} itself like feign's handler does, which compares
+     * against the handler of the other proxy: this one, not feign's.
+     */
+    static final class BeanParamInvocationHandler implements InvocationHandler {
+        final InvocationHandler delegate;
+        final Target<?> target;
+        final Map<Method, MethodHandler> dispatch;
+        final Map<Method, MethodMetadata> metadata;
+
+        BeanParamInvocationHandler(InvocationHandler delegate, Target<?> target, Map<Method, MethodHandler> dispatch,
+                                   Map<Method, MethodMetadata> metadata) {
+            this.delegate = delegate;
+            this.target = target;
+            this.dispatch = dispatch;
+            this.metadata = metadata;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    if (method.getParameterCount() == 1 && method.getParameterTypes()[0] == Object.class) {
+                        Object other = args[0];
+                        return other != null && Proxy.isProxyClass(other.getClass())
+                                && equals(Proxy.getInvocationHandler(other));
+                    }
+                    break;
+                case "hashCode":
+                    if (method.getParameterCount() == 0)
+                        return hashCode();
+                    break;
+                case "toString":
+                    if (method.getParameterCount() == 0)
+                        return toString();
+                    break;
+                default:
+                    break;
             }
+            return delegate.invoke(proxy, method, args);
         }
 
-        return -1;
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof BeanParamInvocationHandler other && delegate.equals(other.delegate);
+        }
+
+        @Override
+        public int hashCode() {
+            return delegate.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
     }
 
     public static class BeanParamMethodHandler implements MethodHandler {
         final MethodHandler delegate;
         final BeanParamTransformer transformer;
-        final int paramIndex;
+        final int[] paramIndexes;
+        final Cache<Map<String, Object>, EncodedFragments> fragments;
+        final RequestPrototype.Slot prototype;
 
-        public BeanParamMethodHandler(MethodHandler delegate, BeanParamTransformer transformer, int paramIndex) {
+        public BeanParamMethodHandler(MethodHandler delegate, BeanParamTransformer transformer, int[] paramIndexes) {
+            this(delegate, transformer, paramIndexes, null, new RequestPrototype.Slot(false));
+        }
+
+        BeanParamMethodHandler(MethodHandler delegate, BeanParamTransformer transformer, int[] paramIndexes,
+                               Cache<Map<String, Object>, EncodedFragments> fragments, RequestPrototype.Slot prototype) {
             this.delegate = delegate;
             this.transformer = transformer;
-            this.paramIndex = paramIndex;
+            this.paramIndexes = paramIndexes;
+            this.fragments = fragments;
+            this.prototype = prototype;
         }
 
         public Object invoke(Object[] argv) throws Throwable {
+            return delegate.invoke(encoderArguments(argv));
+        }
+
+        /**
+         * @return the arguments with the bean values in place of the beans, as the encoder gets them
+         */
+        Object[] encoderArguments(Object[] argv) {
             Map<String, Object> params = transformer.transform(argv);
-            argv[paramIndex] = new EncoderContext(
-                    paramIndex,
+            // values of all beans travel in the first one, the rest must not reach the body encoder
+            for (int i = 1; i < paramIndexes.length; i++)
+                argv[paramIndexes[i]] = null;
+            argv[paramIndexes[0]] = new EncoderContext(
+                    paramIndexes[0],
                     transformer,
-                    params);
-
-            return delegate.invoke(argv);
+                    params,
+                    fragments,
+                    prototype);
+            return argv;
         }
     }
 }
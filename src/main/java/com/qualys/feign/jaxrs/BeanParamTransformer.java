@@ -18,15 +18,10 @@
 
 package com.qualys.feign.jaxrs;
 
-import com.google.common.collect.Multimap;
 import feign.Param;
 
-import jakarta.ws.rs.FormParam;
-import jakarta.ws.rs.HeaderParam;
-import jakarta.ws.rs.QueryParam;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,52 +29,104 @@ import java.util.Map;
  * Created by sskrla on 10/7/15.
  */
 class BeanParamTransformer implements Param.Expander {
+    static final int QUERY = 1;
+    static final int FORM = 2;
+    static final int HEADER = 4;
+    static final int PATH = 8;
+
     final String[][] names;
-    final Multimap<Class<?>, String> params;
+    final int[] kinds;
+    final String[] queryParams;
+    final String[] formParams;
+    final String[] headerParams;
     final Field[] fields;
     final Method[] getters;
-    final int index;
+    final int[] owners;
+    final ValueFormatter[] formatters;
+    final Field[] beanFields;
+    final Method[] beanGetters;
+    final int[] beanOwners;
+    final int[] indexes;
+    /**
+     * Number of bean properties left out because the request of the method does not use them.
+     */
+    int pruned;
 
+    /**
+     * Beans are addressed by slot: the first {@code indexes.length} slots hold the {@code @BeanParam} arguments,
+     * the rest hold nested beans, ordered so that every bean follows its owner.
+     *
+     * @param names       interned parameter names of each property
+     * @param kinds       {@link #QUERY}, {@link #FORM}, {@link #HEADER} and {@link #PATH} bits of each property
+     * @param queryParams  names of the {@code @QueryParam} properties, in property order
+     * @param formParams   names of the {@code @FormParam} properties, in property order
+     * @param headerParams names of the {@code @HeaderParam} properties, in property order
+     * @param owners      slot of the bean holding each property
+     * @param formatters  formatter of each property
+     * @param beanFields  field accessors of bean slots, {@code null} for argument slots
+     * @param beanGetters getter accessors of bean slots, {@code null} for argument slots
+     * @param beanOwners  slot of the bean holding each bean slot, -1 for argument slots
+     * @param indexes     indexes of the {@code @BeanParam} arguments of the method
+     */
     public BeanParamTransformer(
             String[][] names,
-            Multimap<Class<?>, String> params,
+            int[] kinds,
+            String[] queryParams,
+            String[] formParams,
+            String[] headerParams,
             Field[] fields,
             Method[] getters,
-            int index) {
+            int[] owners,
+            ValueFormatter[] formatters,
+            Field[] beanFields,
+            Method[] beanGetters,
+            int[] beanOwners,
+            int[] indexes) {
 
         this.names = names;
-        this.params = params;
+        this.kinds = kinds;
+        this.queryParams = queryParams;
+        this.formParams = formParams;
+        this.headerParams = headerParams;
         this.fields = fields;
         this.getters = getters;
-        this.index = index;
+        this.owners = owners;
+        this.formatters = formatters;
+        this.beanFields = beanFields;
+        this.beanGetters = beanGetters;
+        this.beanOwners = beanOwners;
+        this.indexes = indexes;
     }
 
     public Map<String, Object> transform(Object[] argv) {
-        Object param = argv[index];
         try {
+            // Resolve all beans in a single pass, a null bean nullifies everything beneath it
+            Object[] beans = new Object[beanOwners.length];
+            for (int i = 0; i < indexes.length; i++)
+                beans[i] = argv[indexes[i]];
+            for (int i = indexes.length; i < beanOwners.length; i++) {
+                Object owner = beans[beanOwners[i]];
+                beans[i] = owner != null ? read(beanFields[i], beanGetters[i], owner) : null;
+            }
+
             Map<String, Object> mapped = new HashMap<>();
             for (int i = 0; i < names.length; i++) {
-                Object value = fields[i] != null ? fields[i].get(param) : getters[i].invoke(param);
+                Object owner = beans[owners[i]];
+                Object value = owner != null ? formatters[i].read(fields[i], getters[i], owner) : null;
                 for (String name : names[i])
                     mapped.put(name, value);
             }
 
             return mapped;
-        } catch (Exception e) {
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
             throw new RuntimeException(e);
         }
     }
 
-    public Collection<String> formParams() {
-        return params.get(FormParam.class);
-    }
-
-    public Collection<String> queryParams() {
-        return params.get(QueryParam.class);
-    }
-
-    public Collection<String> headerParams() {
-        return params.get(HeaderParam.class);
+    private static Object read(Field field, Method getter, Object bean) throws Exception {
+        return field != null ? field.get(bean) : getter.invoke(bean);
     }
 
     public String expand(Object value) {
@@ -18,122 +18,350 @@
 
 package com.qualys.feign.jaxrs;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ImmutableMultimap;
-import com.google.common.collect.Multimap;
 
+import jakarta.ws.rs.BeanParam;
 import jakarta.ws.rs.FormParam;
 import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.QueryParam;
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import static com.google.common.collect.Multimaps.invertFrom;
-import static com.google.common.collect.Multimaps.transformValues;
+import static com.qualys.feign.jaxrs.BeanParamTransformer.FORM;
+import static com.qualys.feign.jaxrs.BeanParamTransformer.HEADER;
+import static com.qualys.feign.jaxrs.BeanParamTransformer.PATH;
+import static com.qualys.feign.jaxrs.BeanParamTransformer.QUERY;
 import static java.lang.String.format;
 
 /**
  * Created by sskrla on 10/13/15.
  */
 class BeanParamTransformerFactory {
-    Multimap<String, Annotation> getNames(Annotation[] annotations) {
-        ImmutableMultimap.Builder<String, Annotation> names = ImmutableMultimap.builder();
+    private static final String[] NO_NAMES = new String[0];
+
+    final ValueFormatterRegistry formatters;
+    /**
+     * Snapshot to restore bean layouts from instead of introspecting the beans, {@code null} if none.
+     */
+    ContractSnapshot snapshot;
+    /**
+     * Whether bean properties are found with {@code java.beans.Introspector}, off by default in native images.
+     */
+    boolean introspection = System.getProperty("org.graalvm.nativeimage.imagecode") == null;
+
+    BeanParamTransformerFactory() {
+        this(new ValueFormatterRegistry());
+    }
+
+    BeanParamTransformerFactory(ValueFormatterRegistry formatters) {
+        this.formatters = formatters;
+    }
+
+    /**
+     * @return {@link BeanParamTransformer#QUERY} or another kind bit of a parameter annotation, 0 for other annotations
+     */
+    static int kind(Annotation annotation) {
+        if (annotation instanceof QueryParam)
+            return QUERY;
+        if (annotation instanceof FormParam)
+            return FORM;
+        if (annotation instanceof HeaderParam)
+            return HEADER;
+        if (annotation instanceof PathParam)
+            return PATH;
+        return 0;
+    }
+
+    private static String name(Annotation annotation) {
+        if (annotation instanceof QueryParam queryParam)
+            return queryParam.value();
+        if (annotation instanceof FormParam formParam)
+            return formParam.value();
+        if (annotation instanceof HeaderParam headerParam)
+            return headerParam.value();
+        return ((PathParam) annotation).value();
+    }
+
+    private static boolean hasNames(Annotation[] annotations) {
         for (Annotation annotation : annotations) {
-            Class<?> cls = annotation.getClass();
-            if (QueryParam.class.isAssignableFrom(cls))
-                names.put(((QueryParam) annotation).value(), annotation);
+            if (kind(annotation) != 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Creates a single transformer for all {@code @BeanParam} arguments of a method, so their values are extracted
+     * in one pass into one variable map.
+     *
+     * @param beanClasses  types of the {@code @BeanParam} arguments
+     * @param paramIndexes indexes of the {@code @BeanParam} arguments
+     * @return merged transformer
+     */
+    protected BeanParamTransformer createTransformer(Type[] beanClasses, int[] paramIndexes) {
+        return createTransformer(beanClasses, paramIndexes, null);
+    }
 
-            if (FormParam.class.isAssignableFrom(cls))
-                names.put(((FormParam) annotation).value(), annotation);
+    /**
+     * Creates the transformer of a method, leaving out the properties its request never uses. Query and form
+     * parameters are always sent, path and header parameters only when the templates of the method refer to them.
+     *
+     * @param beanClasses  types of the {@code @BeanParam} arguments
+     * @param paramIndexes indexes of the {@code @BeanParam} arguments
+     * @param variables    variables of the request template of the method, {@code null} to keep every property
+     * @return merged transformer
+     */
+    BeanParamTransformer createTransformer(Type[] beanClasses, int[] paramIndexes, Collection<String> variables) {
+        List<BeanParamPropertyMetadata> propertyMetas = new ArrayList<>();
+        List<BeanParamPropertyMetadata> beanMetas = new ArrayList<>();
+        for (int i = 0; i < paramIndexes.length; i++)
+            beanMetas.add(new BeanParamPropertyMetadata(null, null, null, null, null, -1, null));
+        if (snapshot == null || !snapshot.restoreLayout(this, beanClasses, propertyMetas, beanMetas)) {
+            for (int i = 0; i < paramIndexes.length; i++)
+                collectProperties((Class<?>) beanClasses[i], i, propertyMetas, beanMetas, new HashSet<>());
+            if (snapshot != null)
+                snapshot.storeLayout(beanClasses, propertyMetas, beanMetas);
+        }
 
-            if (HeaderParam.class.isAssignableFrom(cls))
-                names.put(((HeaderParam) annotation).value(), annotation);
+        int pruned = 0;
+        if (variables != null) {
+            int collected = propertyMetas.size();
+            prune(propertyMetas, beanMetas, paramIndexes.length, variables);
+            pruned = collected - propertyMetas.size();
+        }
 
-            if (PathParam.class.isAssignableFrom(cls))
-                names.put(((PathParam) annotation).value(), annotation);
+        Method[] beanGetters = new Method[beanMetas.size()];
+        Field[] beanFields = new Field[beanMetas.size()];
+        int[] beanOwners = new int[beanMetas.size()];
+        int[] roots = new int[beanMetas.size()];
+        for (int i = 0; i < beanMetas.size(); i++) {
+            BeanParamPropertyMetadata beanMetadata = beanMetas.get(i);
+            beanFields[i] = beanMetadata.property;
+            beanGetters[i] = beanMetadata.getter;
+            beanOwners[i] = beanMetadata.owner;
+            roots[i] = i < paramIndexes.length ? i : roots[beanMetadata.owner];
         }
 
-        return names.build();
+        // values of all beans share one variable map, so a name may only come from one argument
+        Map<String, Integer> nameRoots = new HashMap<>();
+        String[][] names = new String[propertyMetas.size()][];
+        Method[] getters = new Method[propertyMetas.size()];
+        Field[] fields = new Field[propertyMetas.size()];
+        int[] owners = new int[propertyMetas.size()];
+        ValueFormatter[] valueFormatters = new ValueFormatter[propertyMetas.size()];
+        int[] kinds = new int[propertyMetas.size()];
+        List<String> queryParams = new ArrayList<>();
+        List<String> formParams = new ArrayList<>();
+        List<String> headerParams = new ArrayList<>();
+        for (int i = 0; i < propertyMetas.size(); i++) {
+            BeanParamPropertyMetadata propertyMetadata = propertyMetas.get(i);
+            fields[i] = propertyMetadata.property;
+            getters[i] = propertyMetadata.getter;
+            owners[i] = propertyMetadata.owner;
+            valueFormatters[i] = propertyMetadata.formatter;
+            names[i] = propertyMetadata.names;
+            for (int j = 0; j < names[i].length; j++) {
+                String name = names[i][j];
+                Integer root = nameRoots.putIfAbsent(name, roots[owners[i]]);
+                if (root != null && root != roots[owners[i]])
+                    throw new IllegalStateException(format("BeanParam parameters %s and %s both declare parameter %s",
+                            paramIndexes[root], paramIndexes[roots[owners[i]]], name));
+
+                int kind = propertyMetadata.kinds[j];
+                kinds[i] |= kind;
+                if ((kind & QUERY) != 0)
+                    queryParams.add(name);
+                if ((kind & FORM) != 0)
+                    formParams.add(name);
+                if ((kind & HEADER) != 0)
+                    headerParams.add(name);
+            }
+        }
+
+        BeanParamTransformer transformer = new BeanParamTransformer(names, kinds, toArray(queryParams),
+                toArray(formParams), toArray(headerParams), fields, getters, owners, valueFormatters, beanFields,
+                beanGetters, beanOwners, paramIndexes);
+        transformer.pruned = pruned;
+        return transformer;
     }
 
-    protected BeanParamTransformer createTransformer(Type beanClass, int paramIndex) {
-        try {
-            List<BeanParamPropertyMetadata> propertyMetas = new ArrayList<>();
-
-            // Find annotated write methods and their respective reads
-            Map<String, PropertyDescriptor> descriptorsByName = new HashMap<>();
-            BeanInfo info = Introspector.getBeanInfo((Class<?>) beanClass);
-            for (PropertyDescriptor prop : info.getPropertyDescriptors()) {
-                if (prop.getReadMethod() != null && prop.getWriteMethod() != null) {
-                    Multimap<String, Annotation> names = getNames(prop.getWriteMethod().getAnnotations());
-                    if (!names.isEmpty()) {
-                        propertyMetas.add(new BeanParamPropertyMetadata(names, null, prop.getReadMethod()));
-                    }
-                }
-                descriptorsByName.put(prop.getName(), prop);
+    private static String[] toArray(List<String> names) {
+        return names.isEmpty() ? NO_NAMES : names.toArray(NO_NAMES);
+    }
+
+    /**
+     * Removes the properties not referenced by {@code variables}, then the nested beans left without properties,
+     * renumbering the bean slots that remain.
+     */
+    private static void prune(
+            List<BeanParamPropertyMetadata> propertyMetas,
+            List<BeanParamPropertyMetadata> beanMetas,
+            int arguments,
+            Collection<String> variables) {
+
+        propertyMetas.removeIf(propertyMetadata -> !isReferenced(propertyMetadata, variables));
+
+        boolean[] used = new boolean[beanMetas.size()];
+        Arrays.fill(used, 0, arguments, true);
+        for (BeanParamPropertyMetadata propertyMetadata : propertyMetas) {
+            for (int slot = propertyMetadata.owner; !used[slot]; slot = beanMetas.get(slot).owner)
+                used[slot] = true;
+        }
+
+        int[] slots = new int[beanMetas.size()];
+        List<BeanParamPropertyMetadata> kept = new ArrayList<>();
+        for (int i = 0; i < beanMetas.size(); i++) {
+            if (!used[i])
+                continue;
+            slots[i] = kept.size();
+            kept.add(beanMetas.get(i).withOwner(i < arguments ? -1 : slots[beanMetas.get(i).owner]));
+        }
+        beanMetas.clear();
+        beanMetas.addAll(kept);
+        propertyMetas.replaceAll(propertyMetadata -> propertyMetadata.withOwner(slots[propertyMetadata.owner]));
+    }
+
+    private static boolean isReferenced(BeanParamPropertyMetadata propertyMetadata, Collection<String> variables) {
+        for (int i = 0; i < propertyMetadata.names.length; i++) {
+            if ((propertyMetadata.kinds[i] & (QUERY | FORM)) != 0 || variables.contains(propertyMetadata.names[i]))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Creates the metadata of a leaf property, named and formatted after the annotations of {@code annotated}.
+     *
+     * @return metadata, with no names if {@code annotated} has no parameter annotation
+     */
+    BeanParamPropertyMetadata property(AnnotatedElement annotated, Field field, Method getter, int owner) {
+        Annotation[] annotations = annotated.getAnnotations();
+        // one entry per name, names are interned so that equal ones share a single string across all transformers
+        String[] names = new String[annotations.length];
+        int[] kinds = new int[annotations.length];
+        int count = 0;
+        for (Annotation annotation : annotations) {
+            int kind = kind(annotation);
+            if (kind == 0)
+                continue;
+            String name = name(annotation).intern();
+            int existing = 0;
+            while (existing < count && !names[existing].equals(name))
+                existing++;
+            if (existing == count) {
+                names[count] = name;
+                count++;
             }
+            kinds[existing] |= kind;
+        }
+        return new BeanParamPropertyMetadata(count > 0 ? Arrays.copyOf(names, count) : NO_NAMES,
+                Arrays.copyOf(kinds, count), annotated, field, getter, owner,
+                formatters.forProperty(field, getter, annotations));
+    }
 
-            // Find annotated fields, prefer getter access but use field in none is found
-            for (Field field : ReflectionUtil.getAllDeclaredFields((Class<?>) beanClass, true)) {
-                String fieldName = field.getName();
-                if (descriptorsByName.containsKey(fieldName)) {
-                    PropertyDescriptor descriptor = descriptorsByName.get(fieldName);
-                    Multimap<String, Annotation> names = getNames(field.getAnnotations());
-                    if (descriptor.getReadMethod() != null && !names.isEmpty()) {
-                        propertyMetas.add(new BeanParamPropertyMetadata(names, null, descriptor.getReadMethod()));
-                        continue;
-                    }
+    /**
+     * Collects annotated properties of the bean. Nested {@code @BeanParam} properties are appended to {@code beanMetas}
+     * before their own properties, so the resulting accessor chain can be evaluated in a single forward pass.
+     *
+     * @param beanClass     class of the bean to analyze
+     * @param owner         slot of the bean in {@code beanMetas}
+     * @param propertyMetas collected leaf properties
+     * @param beanMetas     collected nested bean properties
+     * @param visiting      bean classes on the current nesting path, used to reject cycles
+     */
+    private void collectProperties(
+            Class<?> beanClass,
+            int owner,
+            List<BeanParamPropertyMetadata> propertyMetas,
+            List<BeanParamPropertyMetadata> beanMetas,
+            Set<Class<?>> visiting) {
+
+        if (!visiting.add(beanClass))
+            throw new IllegalStateException(format("Cyclic @BeanParam nesting of %s", beanClass.getName()));
+
+        // Find annotated write methods and their respective reads
+        Map<String, ReflectionUtil.BeanProperty> propertiesByName = introspection
+                ? ReflectionUtil.Introspection.getBeanProperties(beanClass)
+                : ReflectionUtil.getBeanProperties(beanClass);
+        for (ReflectionUtil.BeanProperty prop : propertiesByName.values()) {
+            if (prop.getter != null && prop.setter != null) {
+                if (prop.setter.isAnnotationPresent(BeanParam.class)) {
+                    beanMetas.add(new BeanParamPropertyMetadata(null, null, null, null, prop.getter, owner, null));
+                    collectProperties(prop.type, beanMetas.size() - 1, propertyMetas, beanMetas, visiting);
+                } else {
+                    if (hasNames(prop.setter.getAnnotations()))
+                        propertyMetas.add(property(prop.setter, null, prop.getter, owner));
                 }
+            }
+        }
+
+        // Find annotated fields, prefer getter access but use field in none is found
+        for (Field field : ReflectionUtil.getAllDeclaredFields(beanClass, true)) {
+            ReflectionUtil.BeanProperty prop = propertiesByName.get(field.getName());
+            Method readMethod = prop != null ? prop.getter : null;
 
-                Multimap<String, Annotation> names = getNames(field.getAnnotations());
-                if (!names.isEmpty())
-                    propertyMetas.add(new BeanParamPropertyMetadata(names, field, null));
+            if (field.isAnnotationPresent(BeanParam.class)) {
+                beanMetas.add(new BeanParamPropertyMetadata(null, null, null, readMethod == null ? field : null,
+                        readMethod, owner, null));
+                collectProperties(field.getType(), beanMetas.size() - 1, propertyMetas, beanMetas, visiting);
+                continue;
             }
 
-            String[][] names = new String[propertyMetas.size()][];
-            Method[] getters = new Method[propertyMetas.size()];
-            Field[] fields = new Field[propertyMetas.size()];
-            Multimap<Class<?>, String> params = ArrayListMultimap.create();
-            for (int i = 0; i < propertyMetas.size(); i++) {
-                BeanParamPropertyMetadata propertyMetadata = propertyMetas.get(i);
-                fields[i] = propertyMetadata.property;
-                getters[i] = propertyMetadata.getter;
-                names[i] = propertyMetadata.names.keySet().toArray(new String[]{});
-                invertFrom(
-                        transformValues(propertyMetadata.names, v -> (Class<?>) v.getClass().getInterfaces()[0]),
-                        params);
+            boolean named = hasNames(field.getAnnotations());
+            if (readMethod != null && named) {
+                propertyMetas.add(property(field, null, readMethod, owner));
+                continue;
             }
-            return new BeanParamTransformer(names, ImmutableMultimap.copyOf(params), fields, getters, paramIndex);
 
-        } catch (IntrospectionException e) {
-            throw new RuntimeException(format("Unable to build bean info for %s", beanClass), e);
+            if (named)
+                propertyMetas.add(property(field, field, null, owner));
         }
+
+        visiting.remove(beanClass);
     }
 
     static class BeanParamPropertyMetadata {
-        final Multimap<String, Annotation> names;
+        final String[] names;
+        final int[] kinds;
+        final AnnotatedElement annotated;
         final Field property;
         final Method getter;
+        final int owner;
+        final ValueFormatter formatter;
 
         public BeanParamPropertyMetadata(
-                Multimap<String, Annotation> names,
+                String[] names,
+                int[] kinds,
+                AnnotatedElement annotated,
                 Field property,
-                Method getter) {
+                Method getter,
+                int owner,
+                ValueFormatter formatter) {
 
             this.names = names;
+            this.kinds = kinds;
+            this.annotated = annotated;
             this.property = property;
             this.getter = getter;
+            this.owner = owner;
+            this.formatter = formatter;
+        }
+
+        BeanParamPropertyMetadata withOwner(int owner) {
+            return owner == this.owner
+                    ? this
+                    : new BeanParamPropertyMetadata(names, kinds, annotated, property, getter, owner, formatter);
         }
     }
 }
@@ -0,0 +1,195 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import feign.MethodMetadata;
+import feign.RequestTemplate;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static jakarta.ws.rs.core.HttpHeaders.CONTENT_ENCODING;
+import static jakarta.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Compresses encoded request bodies of the methods selected by {@link CompressedBody} or by a content type rule.
+ * Each method is bound to its rule once, when its contract is parsed. Deflaters and their output buffers are pooled,
+ * so compressing a body allocates only the compressed array handed to the template.
+ */
+final class BodyCompression {
+    private static final int POOL_SIZE = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    /**
+     * Size above which the buffer of a compressor is dropped when it goes back to the pool, so that a few large bodies
+     * do not keep {@link #POOL_SIZE} large buffers alive.
+     */
+    static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    final List<Rule> rules = new CopyOnWriteArrayList<>();
+    private final Map<Method, Rule> methods = new ConcurrentHashMap<>();
+    private final BlockingQueue<Compressor> gzip = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Compressor> deflate = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    /**
+     * @param mediaType   content type of the bodies to compress, parameters are ignored
+     * @param coding      compression to apply
+     * @param minimumSize size in bytes below which bodies are sent as they are
+     */
+    void register(String mediaType, CompressedBody.Coding coding, int minimumSize) {
+        rules.add(new Rule(mediaType, coding, minimumSize));
+    }
+
+    /**
+     * Binds the method of the metadata to its {@link CompressedBody}, or else to the rule of the first of its content
+     * types with one.
+     */
+    void bind(MethodMetadata metadata) {
+        if (metadata.method() == null)
+            return;
+
+        Rule rule = rule(metadata.method(), metadata.template());
+        if (rule != null)
+            methods.put(metadata.method(), rule);
+        else
+            methods.remove(metadata.method());
+    }
+
+    /**
+     * @return rule bound to the method, {@code null} if its bodies are sent as they are
+     */
+    Rule forMethod(Method method) {
+        return methods.isEmpty() || method == null ? null : methods.get(method);
+    }
+
+    /**
+     * Compresses the body of the template when its method calls for it, unless the body is already encoded.
+     */
+    void apply(RequestTemplate template) {
+        byte[] body = template.body();
+        if (body == null || body.length == 0 || template.methodMetadata() == null)
+            return;
+
+        Rule rule = forMethod(template.methodMetadata().method());
+        if (rule == null || body.length < rule.minimumSize || template.headers().containsKey(CONTENT_ENCODING))
+            return;
+
+        BlockingQueue<Compressor> pool = rule.coding == CompressedBody.Coding.GZIP ? gzip : deflate;
+        Compressor compressor = pool.poll();
+        if (compressor == null)
+            compressor = new Compressor(rule.coding);
+        try {
+            template.body(compressor.compress(body), null);
+        } finally {
+            compressor.trim();
+            if (!pool.offer(compressor))
+                compressor.deflater.end();
+        }
+        template.header(CONTENT_ENCODING, rule.coding.contentEncoding);
+    }
+
+    private Rule rule(Method method, RequestTemplate template) {
+        CompressedBody annotation = method.getAnnotation(CompressedBody.class);
+        if (annotation == null)
+            annotation = method.getDeclaringClass().getAnnotation(CompressedBody.class);
+        if (annotation != null)
+            return new Rule(null, annotation.value(), annotation.minimumSize());
+
+        Collection<String> contentTypes = template.headers().get(CONTENT_TYPE);
+        if (contentTypes != null) {
+            for (String contentType : contentTypes) {
+                int parameters = contentType.indexOf(';');
+                String mediaType = (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim();
+                for (Rule rule : rules) {
+                    if (rule.mediaType.equalsIgnoreCase(mediaType))
+                        return rule;
+                }
+            }
+        }
+        return null;
+    }
+
+    record Rule(String mediaType, CompressedBody.Coding coding, int minimumSize) {
+    }
+
+    /**
+     * A deflater with the buffer it writes into, grown to the largest body compressed so far up to
+     * {@link #MAX_RETAINED_BUFFER_SIZE}.
+     */
+    private static final class Compressor {
+        final Deflater deflater;
+        final boolean gzip;
+        final CRC32 crc = new CRC32();
+        byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+        Compressor(CompressedBody.Coding coding) {
+            this.gzip = coding == CompressedBody.Coding.GZIP;
+            // gzip wraps raw deflate data with its own header and trailer, deflate is the zlib format
+            this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, gzip);
+        }
+
+        byte[] compress(byte[] body) {
+            deflater.reset();
+            deflater.setInput(body);
+            deflater.finish();
+
+            int count = 0;
+            if (gzip) {
+                System.arraycopy(GZIP_HEADER, 0, buffer, 0, GZIP_HEADER.length);
+                count = GZIP_HEADER.length;
+            }
+            while (!deflater.finished()) {
+                if (count == buffer.length)
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                count += deflater.deflate(buffer, count, buffer.length - count);
+            }
+            if (gzip) {
+                crc.reset();
+                crc.update(body);
+                if (buffer.length - count < 8)
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                count = writeInt(buffer, count, (int) crc.getValue());
+                count = writeInt(buffer, count, body.length);
+            }
+            return Arrays.copyOf(buffer, count);
+        }
+
+        void trim() {
+            if (buffer.length > MAX_RETAINED_BUFFER_SIZE)
+                buffer = new byte[INITIAL_BUFFER_SIZE];
+        }
+
+        private static int writeInt(byte[] buffer, int offset, int value) {
+            buffer[offset] = (byte) value;
+            buffer[offset + 1] = (byte) (value >> 8);
+            buffer[offset + 2] = (byte) (value >> 16);
+            buffer[offset + 3] = (byte) (value >> 24);
+            return offset + 4;
+        }
+    }
+}
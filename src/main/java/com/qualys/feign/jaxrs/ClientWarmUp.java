@@ -0,0 +1,170 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import com.qualys.feign.jaxrs.BeanParamInvocationHandlerFactory.BeanParamInvocationHandler;
+import com.qualys.feign.jaxrs.BeanParamInvocationHandlerFactory.BeanParamMethodHandler;
+import feign.Client;
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.Request;
+import feign.Response;
+
+import jakarta.ws.rs.BeanParam;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Calls every method of a client with synthetic arguments, so that class loading, request prototypes and the JIT are
+ * through with the encoding path before the first real request. The client warmed up is a throwaway instance built
+ * with {@link WarmUpClient}, which answers every request with an empty response; the instance returned to the caller
+ * takes over its {@link #beanParamHandlers handlers}. Methods are warmed up in parallel on the common
+ * {@code ForkJoinPool}.
+ */
+final class ClientWarmUp {
+    private static final String SAMPLE = "warmup";
+    private static final int MAX_DEPTH = 8;
+
+    private ClientWarmUp() {
+    }
+
+    /**
+     * @param client client built with {@link WarmUpClient}
+     * @param passes number of calls per method
+     */
+    static void run(Object client, int passes) {
+        BeanParamInvocationHandler handler = (BeanParamInvocationHandler) Proxy.getInvocationHandler(client);
+        List<Method> methods = handler.dispatch.keySet().stream()
+                .filter(method -> !method.isDefault())
+                .toList();
+
+        methods.parallelStream().forEach(method -> {
+            for (int i = 0; i < passes; i++)
+                call(client, method);
+        });
+    }
+
+    /**
+     * @return {@code @BeanParam} handlers of the client by method, for the client built next to take over
+     */
+    static Map<Method, BeanParamMethodHandler> beanParamHandlers(Object client) {
+        BeanParamInvocationHandler handler = (BeanParamInvocationHandler) Proxy.getInvocationHandler(client);
+        Map<Method, BeanParamMethodHandler> handlers = new HashMap<>();
+        for (Map.Entry<Method, MethodHandler> entry : handler.dispatch.entrySet()) {
+            if (entry.getValue() instanceof BeanParamMethodHandler beanHandler)
+                handlers.put(entry.getKey(), beanHandler);
+        }
+        return handlers;
+    }
+
+    private static void call(Object client, Method method) {
+        Parameter[] parameters = method.getParameters();
+        Object[] args = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            args[i] = parameters[i].isAnnotationPresent(BeanParam.class)
+                    ? bean(parameters[i].getType(), 0)
+                    : sample(parameters[i].getType());
+        }
+
+        try {
+            method.invoke(client, args);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // decoding an empty response or encoding a synthetic body may fail, the encoding path ran regardless
+        }
+    }
+
+    private static Object bean(Class<?> type, int depth) {
+        if (depth > MAX_DEPTH)
+            return null;
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            Object bean = constructor.newInstance();
+            for (Field field : ReflectionUtil.getAllDeclaredFields(type, false)) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()))
+                    continue;
+                Object value = field.isAnnotationPresent(BeanParam.class)
+                        ? bean(field.getType(), depth + 1)
+                        : sample(field.getType());
+                if (value != null) {
+                    field.setAccessible(true);
+                    field.set(bean, value);
+                }
+            }
+            return bean;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return a value of the type, {@code null} for types without an obvious one
+     */
+    private static Object sample(Class<?> type) {
+        if (type == String.class)
+            return SAMPLE;
+        if (type == int.class || type == Integer.class)
+            return 1;
+        if (type == long.class || type == Long.class)
+            return 1L;
+        if (type == boolean.class || type == Boolean.class)
+            return Boolean.TRUE;
+        if (type == double.class || type == Double.class)
+            return 1d;
+        if (type == float.class || type == Float.class)
+            return 1f;
+        if (type == short.class || type == Short.class)
+            return (short) 1;
+        if (type == byte.class || type == Byte.class)
+            return (byte) 1;
+        if (type == char.class || type == Character.class)
+            return 'w';
+        if (type.isEnum())
+            return type.getEnumConstants().length > 0 ? type.getEnumConstants()[0] : null;
+        if (type == String[].class)
+            return new String[]{SAMPLE};
+        if (type.isAssignableFrom(List.class))
+            return List.of(SAMPLE);
+        if (type.isAssignableFrom(Map.class))
+            return Map.of(SAMPLE, SAMPLE);
+        return null;
+    }
+
+    /**
+     * Answers every request with an empty response, in process.
+     */
+    static final class WarmUpClient implements Client {
+        @Override
+        public Response execute(Request request, Request.Options options) {
+            return Response.builder()
+                    .request(request)
+                    .status(204)
+                    .reason("Warm-up")
+                    .headers(Map.of())
+                    .body(new byte[0])
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Compresses the request body of a method, or of every method of an interface, and sets {@code Content-Encoding}.
+ * Takes effect with clients whose encoder is wrapped by {@link JAXRS3Profile}, which also offers
+ * {@link JAXRS3Profile#compressBodies} to select methods by content type instead.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CompressedBody {
+    Coding value() default Coding.GZIP;
+
+    /**
+     * @return size in bytes below which bodies are sent as they are
+     */
+    int minimumSize() default 0;
+
+    enum Coding {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        final String contentEncoding;
+
+        Coding(String contentEncoding) {
+            this.contentEncoding = contentEncoding;
+        }
+    }
+}
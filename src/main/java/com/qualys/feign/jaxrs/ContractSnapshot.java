@@ -0,0 +1,441 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import feign.Contract;
+import feign.Feign;
+import feign.MethodMetadata;
+import feign.MethodMetadataCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.String.format;
+
+/**
+ * Binary snapshot of parsed contracts and {@code @BeanParam} property layouts, so a new JVM can skip annotation
+ * parsing and bean introspection for interfaces it has seen before. Layouts keep the names, kinds and formatter of
+ * every property; formatters are selected again only when {@code ParamConverterProvider}s are registered, as they may
+ * not be the ones of the run that wrote the snapshot. Every entry carries a hash of the class files it was derived
+ * from, those of the contract and of this library that produced it included; entries whose classes changed, parsed by
+ * another contract, or which fail to load, are parsed live and replaced. Checking the hashes still reads those class
+ * files, each once per JVM.
+ * <p>
+ * The snapshot is filled while clients are built and written by {@link #save()}, or ahead of time by {@link #main}:
+ * <pre>
+ * ContractSnapshot snapshot = ContractSnapshot.open(path);
+ * Resource client = JAXRS3Profile.create().contractSnapshot(snapshot).target(Resource.class, url);
+ * snapshot.save();
+ * </pre>
+ */
+public final class ContractSnapshot {
+    private static final int MAGIC = 0x464A5331;
+    private static final int VERSION = 3;
+
+    private static final byte NONE = 0;
+    private static final byte FIELD = 1;
+    private static final byte METHOD = 2;
+    private static final byte[] NO_DIGEST = new byte[0];
+    /**
+     * SHA-256 of the class file of each class, {@link #NO_DIGEST} if it is not available as a resource.
+     */
+    private static final ClassValue<byte[]> CLASS_DIGESTS = new ClassValue<>() {
+        @Override
+        protected byte[] computeValue(Class<?> cls) {
+            return digest(cls);
+        }
+    };
+
+    final Path file;
+    private final Map<String, Entry> contracts = new ConcurrentHashMap<>();
+    private final Map<String, Entry> layouts = new ConcurrentHashMap<>();
+    private volatile boolean changed;
+    final AtomicInteger restored = new AtomicInteger();
+    final AtomicInteger parsed = new AtomicInteger();
+
+    private ContractSnapshot(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens a snapshot, starting empty if the file does not exist or can not be read.
+     *
+     * @param file snapshot file
+     * @return snapshot backed by the file
+     */
+    public static ContractSnapshot open(Path file) {
+        ContractSnapshot snapshot = new ContractSnapshot(file);
+        if (Files.isReadable(file)) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    Map<String, Entry> contracts = readEntries(in);
+                    Map<String, Entry> layouts = readEntries(in);
+                    snapshot.contracts.putAll(contracts);
+                    snapshot.layouts.putAll(layouts);
+                }
+            } catch (IOException e) {
+                // unreadable snapshot, everything is parsed live and the file rewritten on save
+                snapshot.changed = true;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Writes the snapshot if anything was parsed live since it was opened. The file is replaced atomically.
+     *
+     * @throws IOException if the file can not be written
+     */
+    public synchronized void save() throws IOException {
+        if (!changed)
+            return;
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(temp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeEntries(out, contracts);
+            writeEntries(out, layouts);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        changed = false;
+    }
+
+    /**
+     * @param delegate contract parsing interfaces missing from the snapshot
+     * @return contract answering from the snapshot when it is up to date
+     */
+    public Contract contract(Contract delegate) {
+        return targetType -> metadata(targetType, delegate);
+    }
+
+    List<MethodMetadata> metadata(Class<?> targetType, Contract delegate) {
+        byte[] hash = hash(contractClasses(targetType, delegate));
+        Entry entry = contracts.get(targetType.getName());
+        if (hash != null && entry != null && Arrays.equals(hash, entry.hash)) {
+            List<MethodMetadata> metadata = readContract(targetType, entry.data);
+            if (metadata != null) {
+                restored.incrementAndGet();
+                return metadata;
+            }
+        }
+
+        List<MethodMetadata> metadata = delegate.parseAndValidateMetadata(targetType);
+        parsed.incrementAndGet();
+        if (hash != null && metadata.stream().allMatch(MethodMetadataCodec::isSupported)) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeInt(metadata.size());
+                for (MethodMetadata methodMetadata : metadata)
+                    MethodMetadataCodec.write(out, methodMetadata);
+                contracts.put(targetType.getName(), new Entry(hash, bytes.toByteArray()));
+                changed = true;
+            } catch (IOException e) {
+                throw new IllegalStateException(format("Unable to snapshot %s", targetType.getName()), e);
+            }
+        }
+        return metadata;
+    }
+
+    /**
+     * @return classes the metadata of the interface depends on: the interface, the contract parsing it with its
+     * superclasses, and the codec writing it
+     */
+    private static Set<Class<?>> contractClasses(Class<?> targetType, Contract delegate) {
+        Set<Class<?>> classes = new LinkedHashSet<>(ReflectionUtil.contractClasses(targetType));
+        for (Class<?> cls = delegate.getClass(); cls != null && cls != Object.class; cls = cls.getSuperclass())
+            classes.add(cls);
+        classes.add(MethodMetadataCodec.class);
+        return classes;
+    }
+
+    /**
+     * @return classes the layout of the beans depends on: the beans and the factory collecting their properties
+     */
+    private static Set<Class<?>> layoutClasses(Type[] beanClasses) {
+        Set<Class<?>> classes = new LinkedHashSet<>(ReflectionUtil.beanClasses(beanClasses));
+        classes.add(BeanParamTransformerFactory.class);
+        classes.add(ReflectionUtil.class);
+        return classes;
+    }
+
+    private static List<MethodMetadata> readContract(Class<?> targetType, byte[] data) {
+        Map<String, Method> methodsByKey = new HashMap<>();
+        for (Method method : targetType.getMethods())
+            methodsByKey.put(Feign.configKey(targetType, method), method);
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int size = in.readInt();
+            List<MethodMetadata> metadata = new ArrayList<>(size);
+            for (int i = 0; i < size; i++)
+                metadata.add(MethodMetadataCodec.read(in, targetType, methodsByKey));
+            return metadata;
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Restores the layout of the beans, the order of properties being the one the factory collected them in. Names
+     * and kinds of properties are read from the snapshot, not from their annotations.
+     *
+     * @return {@code false} if the layout must be collected live
+     */
+    boolean restoreLayout(BeanParamTransformerFactory factory, Type[] beanClasses,
+                          List<BeanParamTransformerFactory.BeanParamPropertyMetadata> propertyMetas,
+                          List<BeanParamTransformerFactory.BeanParamPropertyMetadata> beanMetas) {
+        byte[] hash = hash(layoutClasses(beanClasses));
+        Entry entry = layouts.get(layoutKey(beanClasses));
+        if (hash == null || entry == null || !Arrays.equals(hash, entry.hash))
+            return false;
+
+        ClassLoader loader = ((Class<?>) beanClasses[0]).getClassLoader();
+        List<BeanParamTransformerFactory.BeanParamPropertyMetadata> properties = new ArrayList<>();
+        List<BeanParamTransformerFactory.BeanParamPropertyMetadata> beans = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.data))) {
+            for (int i = 0, size = in.readInt(); i < size; i++) {
+                int owner = in.readInt();
+                AnnotatedElement reader = readMember(in, loader);
+                beans.add(new BeanParamTransformerFactory.BeanParamPropertyMetadata(null, null, null,
+                        reader instanceof Field field ? field : null, reader instanceof Method method ? method : null,
+                        owner, null));
+            }
+            for (int i = 0, size = in.readInt(); i < size; i++) {
+                int owner = in.readInt();
+                AnnotatedElement reader = readMember(in, loader);
+                AnnotatedElement annotated = readMember(in, loader);
+                String[] names = new String[in.readInt()];
+                int[] kinds = new int[names.length];
+                for (int name = 0; name < names.length; name++) {
+                    names[name] = in.readUTF().intern();
+                    kinds[name] = in.readInt();
+                }
+                Field field = reader instanceof Field readField ? readField : null;
+                Method getter = reader instanceof Method readMethod ? readMethod : null;
+                ValueFormatter formatter = factory.formatters.read(in, field, getter, loader);
+                properties.add(formatter != null
+                        ? new BeanParamTransformerFactory.BeanParamPropertyMetadata(names, kinds, annotated, field,
+                        getter, owner, formatter)
+                        : factory.property(annotated, field, getter, owner));
+            }
+        } catch (IOException | ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+
+        beanMetas.addAll(beans);
+        propertyMetas.addAll(properties);
+        restored.incrementAndGet();
+        return true;
+    }
+
+    void storeLayout(Type[] beanClasses,
+                     List<BeanParamTransformerFactory.BeanParamPropertyMetadata> propertyMetas,
+                     List<BeanParamTransformerFactory.BeanParamPropertyMetadata> beanMetas) {
+        byte[] hash = hash(layoutClasses(beanClasses));
+        if (hash == null)
+            return;
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            // the first slots are the bean arguments themselves
+            out.writeInt(beanMetas.size() - beanClasses.length);
+            for (BeanParamTransformerFactory.BeanParamPropertyMetadata bean : beanMetas.subList(beanClasses.length, beanMetas.size())) {
+                out.writeInt(bean.owner);
+                writeMember(out, bean.property != null ? bean.property : bean.getter);
+            }
+            out.writeInt(propertyMetas.size());
+            for (BeanParamTransformerFactory.BeanParamPropertyMetadata property : propertyMetas) {
+                out.writeInt(property.owner);
+                writeMember(out, property.property != null ? property.property : property.getter);
+                writeMember(out, property.annotated);
+                out.writeInt(property.names.length);
+                for (int name = 0; name < property.names.length; name++) {
+                    out.writeUTF(property.names[name]);
+                    out.writeInt(property.kinds[name]);
+                }
+                ValueFormatterRegistry.write(out, property.formatter);
+            }
+            layouts.put(layoutKey(beanClasses), new Entry(hash, bytes.toByteArray()));
+            parsed.incrementAndGet();
+            changed = true;
+        } catch (IOException e) {
+            throw new IllegalStateException(format("Unable to snapshot layout of %s", layoutKey(beanClasses)), e);
+        }
+    }
+
+    private static void writeMember(DataOutputStream out, AnnotatedElement member) throws IOException {
+        if (member instanceof Field field) {
+            out.writeByte(FIELD);
+            out.writeUTF(field.getDeclaringClass().getName());
+            out.writeUTF(field.getName());
+        } else if (member instanceof Method method) {
+            out.writeByte(METHOD);
+            out.writeUTF(method.getDeclaringClass().getName());
+            out.writeUTF(method.getName());
+            out.writeInt(method.getParameterCount());
+            for (Class<?> parameterType : method.getParameterTypes())
+                out.writeUTF(parameterType.getName());
+        } else {
+            out.writeByte(NONE);
+        }
+    }
+
+    private static AnnotatedElement readMember(DataInputStream in, ClassLoader loader)
+            throws IOException, ReflectiveOperationException {
+
+        byte kind = in.readByte();
+        if (kind == NONE)
+            return null;
+
+        Class<?> declaringClass = Class.forName(in.readUTF(), false, loader);
+        String name = in.readUTF();
+        if (kind == FIELD) {
+            Field field = declaringClass.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        }
+
+        String[] parameterTypes = new String[in.readInt()];
+        for (int i = 0; i < parameterTypes.length; i++)
+            parameterTypes[i] = in.readUTF();
+        for (Method method : declaringClass.getDeclaredMethods()) {
+            if (method.getName().equals(name) && Arrays.equals(parameterTypes,
+                    Arrays.stream(method.getParameterTypes()).map(Class::getName).toArray(String[]::new)))
+                return method;
+        }
+        throw new NoSuchMethodException(declaringClass.getName() + "." + name);
+    }
+
+    private static String layoutKey(Type[] beanClasses) {
+        StringBuilder key = new StringBuilder();
+        for (Type beanClass : beanClasses)
+            key.append(key.length() > 0 ? "," : "").append(((Class<?>) beanClass).getName());
+        return key.toString();
+    }
+
+    /**
+     * @return SHA-256 of the class files, {@code null} if one of them is not available as a resource
+     */
+    private static byte[] hash(Set<Class<?>> classes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Class<?> cls : classes) {
+                byte[] classDigest = CLASS_DIGESTS.get(cls);
+                if (classDigest == NO_DIGEST)
+                    return null;
+                digest.update(cls.getName().getBytes(StandardCharsets.UTF_8));
+                digest.update(classDigest);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static byte[] digest(Class<?> cls) {
+        String resource = cls.getName().replace('.', '/') + ".class";
+        ClassLoader loader = cls.getClassLoader() != null ? cls.getClassLoader() : ClassLoader.getSystemClassLoader();
+        try (InputStream in = loader.getResourceAsStream(resource)) {
+            return in != null ? MessageDigest.getInstance("SHA-256").digest(in.readAllBytes()) : NO_DIGEST;
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return NO_DIGEST;
+        }
+    }
+
+    private static Map<String, Entry> readEntries(DataInputStream in) throws IOException {
+        Map<String, Entry> entries = new HashMap<>();
+        for (int i = 0, size = in.readInt(); i < size; i++) {
+            String key = in.readUTF();
+            byte[] hash = new byte[in.readInt()];
+            in.readFully(hash);
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            entries.put(key, new Entry(hash, data));
+        }
+        return entries;
+    }
+
+    private static void writeEntries(DataOutputStream out, Map<String, Entry> entries) throws IOException {
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().hash.length);
+            out.write(entry.getValue().hash);
+            out.writeInt(entry.getValue().data.length);
+            out.write(entry.getValue().data);
+        }
+    }
+
+    /**
+     * Builds the snapshot ahead of time, for instance from the build.
+     *
+     * @param args snapshot file followed by the names of the interfaces to parse
+     * @throws Exception if an interface can not be loaded or the snapshot written
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2)
+            throw new IllegalArgumentException("Usage: ContractSnapshot <file> <interface>...");
+
+        ContractSnapshot snapshot = open(Paths.get(args[0]));
+        for (String name : Arrays.asList(args).subList(1, args.length))
+            JAXRS3Profile.create().contractSnapshot(snapshot).target(Class.forName(name), "http://localhost");
+        snapshot.save();
+    }
+
+    private static final class Entry {
+        final byte[] hash;
+        final byte[] data;
+
+        Entry(byte[] hash, byte[] data) {
+            this.hash = hash;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import feign.RequestTemplate;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expanded url and headers of a request, as produced by {@link BeanParamEncoder} for one set of bean values.
+ * Immutable, so the same fragments may be spliced into any number of requests of the method.
+ */
+final class EncodedFragments {
+    final String uri;
+    final Map<String, Collection<String>> headers;
+
+    EncodedFragments(String uri, Map<String, Collection<String>> headers) {
+        this.uri = uri;
+        this.headers = Collections.unmodifiableMap(headers);
+    }
+
+    void applyTo(RequestTemplate mutable) {
+        // queries are re-extracted from the expanded uri, drop the templates when none are left
+        mutable.queries(Collections.emptyMap());
+        mutable.uri(uri);
+
+        mutable.headers(Collections.emptyMap());
+        for (Map.Entry<String, Collection<String>> header : headers.entrySet())
+            mutable.header(header.getKey(), header.getValue());
+    }
+
+    /**
+     * Values may key the memo only if they can not change afterwards: formatted bean values are strings
+     * or fresh lists of strings, anything else (a query map property for instance) is left out.
+     */
+    static boolean isCacheKey(Map<String, Object> values) {
+        for (Object value : values.values()) {
+            if (value != null && !(value instanceof String) && !(value instanceof List))
+                return false;
+        }
+        return true;
+    }
+}
@@ -18,6 +18,8 @@
 
 package com.qualys.feign.jaxrs;
 
+import com.google.common.cache.Cache;
+
 import java.util.Map;
 
 /**
@@ -27,14 +29,34 @@ public class EncoderContext {
     final Integer paramIndex;
     final BeanParamTransformer transformer;
     final Map<String, Object> values;
+    /**
+     * Memo of the method's encoded fragments keyed by bean values, {@code null} when memoization is off.
+     */
+    final Cache<Map<String, Object>, EncodedFragments> fragments;
+    /**
+     * Prototype of the method's request, {@code null} for contexts not created for a method.
+     */
+    final RequestPrototype.Slot prototype;
 
     EncoderContext(
             Integer paramIndex,
             BeanParamTransformer transformer,
             Map<String, Object> values) {
 
+        this(paramIndex, transformer, values, null, null);
+    }
+
+    EncoderContext(
+            Integer paramIndex,
+            BeanParamTransformer transformer,
+            Map<String, Object> values,
+            Cache<Map<String, Object>, EncodedFragments> fragments,
+            RequestPrototype.Slot prototype) {
+
         this.paramIndex = paramIndex;
         this.transformer = transformer;
         this.values = values;
+        this.fragments = fragments;
+        this.prototype = prototype;
     }
 }
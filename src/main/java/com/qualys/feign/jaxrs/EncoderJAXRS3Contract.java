@@ -9,7 +9,14 @@ import jakarta.ws.rs.core.Context;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import static feign.Util.*;
 import static feign.Util.removeValues;
@@ -90,6 +97,16 @@ public class EncoderJAXRS3Contract extends AlwaysEncodeBodyContract {
         super.registerParameterAnnotation(Context.class, (ann, data, i) -> data.ignoreParamater(i));
     }
 
+    @Override
+    protected MethodMetadata parseAndValidateMetadata(Class<?> targetType, Method method) {
+        final MethodMetadata data = super.parseAndValidateMetadata(targetType, method);
+        // form parameters of methods with beans are written by BeanParamEncoder, which needs all the arguments
+        // instead of the form variables map feign passes to the encoder otherwise
+        if (Arrays.stream(method.getParameters()).anyMatch(parameter -> parameter.isAnnotationPresent(BeanParam.class)))
+            data.formParams().clear();
+        return data;
+    }
+
     private void handleProducesAnnotation(Produces produces, MethodMetadata data) {
         final String[] serverProduces =
                 removeValues(produces.value(), mediaType -> emptyToNull(mediaType) == null, String.class);
@@ -136,59 +153,99 @@ public class EncoderJAXRS3Contract extends AlwaysEncodeBodyContract {
             nameParam(data, name, paramIndex);
         });
 
-        registerParameterAnnotation(BeanParam.class, (param, data, paramIndex) -> {
-            final Field[] aggregatedParams = ReflectionUtil.getAllDeclaredFields(data.method()
-                    .getParameters()[paramIndex]
-                    .getType(), true);
-
-            for (Field aggregatedParam : aggregatedParams) {
-
-                if (aggregatedParam.isAnnotationPresent(PathParam.class)) {
-                    final String name = aggregatedParam.getAnnotation(PathParam.class).value();
-                    checkState(
-                            emptyToNull(name) != null,
-                            "BeanParam parameter %s contains PathParam with empty .value() on field %s",
-                            paramIndex,
-                            aggregatedParam.getName());
-                    nameParam(data, name, paramIndex);
-                }
+        registerParameterAnnotation(BeanParam.class, (param, data, paramIndex) ->
+                registerBeanParams(data.method().getParameters()[paramIndex].getType(), data, paramIndex,
+                        new HashSet<>()));
+    }
 
-                if (aggregatedParam.isAnnotationPresent(QueryParam.class)) {
-                    final String name = aggregatedParam.getAnnotation(QueryParam.class).value();
-                    checkState(
-                            emptyToNull(name) != null,
-                            "BeanParam parameter %s contains QueryParam with empty .value() on field %s",
-                            paramIndex,
-                            aggregatedParam.getName());
-                    final String query = addTemplatedParam(name);
-                    data.template().query(name, query);
-                    nameParam(data, name, paramIndex);
-                }
+    /**
+     * Registers names of all parameters aggregated by the bean, descending into nested {@code @BeanParam} fields.
+     *
+     * @param beanType   type of the bean to analyze
+     * @param data       metadata of the method
+     * @param paramIndex index of the method parameter the bean belongs to
+     * @param visiting   bean types on the current nesting path, used to reject cycles
+     */
+    private void registerBeanParams(Class<?> beanType, MethodMetadata data, int paramIndex, Set<Class<?>> visiting) {
+        checkState(visiting.add(beanType), "BeanParam parameter %s contains cyclic nesting of %s",
+                paramIndex, beanType.getName());
 
-                if (aggregatedParam.isAnnotationPresent(HeaderParam.class)) {
-                    final String name = aggregatedParam.getAnnotation(HeaderParam.class).value();
-                    checkState(
-                            emptyToNull(name) != null,
-                            "BeanParam parameter %s contains HeaderParam with empty .value() on field %s",
-                            paramIndex,
-                            aggregatedParam.getName());
-                    final String header = addTemplatedParam(name);
-                    data.template().header(name, header);
-                    nameParam(data, name, paramIndex);
-                }
+        final Field[] aggregatedParams = ReflectionUtil.getAllDeclaredFields(beanType, true);
 
-                if (aggregatedParam.isAnnotationPresent(FormParam.class)) {
-                    final String name = aggregatedParam.getAnnotation(FormParam.class).value();
-                    checkState(
-                            emptyToNull(name) != null,
-                            "BeanParam parameter %s contains FormParam with empty .value() on field %s",
-                            paramIndex,
-                            aggregatedParam.getName());
-                    data.formParams().add(name);
-                    nameParam(data, name, paramIndex);
-                }
+        for (Field aggregatedParam : aggregatedParams) {
+
+            if (aggregatedParam.isAnnotationPresent(BeanParam.class)) {
+                registerBeanParams(aggregatedParam.getType(), data, paramIndex, visiting);
+                continue;
             }
-        });
+
+            if (aggregatedParam.isAnnotationPresent(PathParam.class)) {
+                final String name = aggregatedParam.getAnnotation(PathParam.class).value();
+                checkState(
+                        emptyToNull(name) != null,
+                        "BeanParam parameter %s contains PathParam with empty .value() on field %s",
+                        paramIndex,
+                        aggregatedParam.getName());
+                nameBeanParam(data, name, paramIndex);
+            }
+
+            if (aggregatedParam.isAnnotationPresent(QueryParam.class)) {
+                final String name = aggregatedParam.getAnnotation(QueryParam.class).value();
+                checkState(
+                        emptyToNull(name) != null,
+                        "BeanParam parameter %s contains QueryParam with empty .value() on field %s",
+                        paramIndex,
+                        aggregatedParam.getName());
+                final String query = addTemplatedParam(name);
+                data.template().query(name, query);
+                nameBeanParam(data, name, paramIndex);
+            }
+
+            if (aggregatedParam.isAnnotationPresent(HeaderParam.class)) {
+                final String name = aggregatedParam.getAnnotation(HeaderParam.class).value();
+                checkState(
+                        emptyToNull(name) != null,
+                        "BeanParam parameter %s contains HeaderParam with empty .value() on field %s",
+                        paramIndex,
+                        aggregatedParam.getName());
+                final String header = addTemplatedParam(name);
+                data.template().header(name, header);
+                nameBeanParam(data, name, paramIndex);
+            }
+
+            if (aggregatedParam.isAnnotationPresent(FormParam.class)) {
+                final String name = aggregatedParam.getAnnotation(FormParam.class).value();
+                checkState(
+                        emptyToNull(name) != null,
+                        "BeanParam parameter %s contains FormParam with empty .value() on field %s",
+                        paramIndex,
+                        aggregatedParam.getName());
+                nameBeanParam(data, name, paramIndex);
+            }
+        }
+
+        visiting.remove(beanType);
+    }
+
+    /**
+     * Names a parameter aggregated by the bean, rejecting names already declared by another {@code @BeanParam}
+     * of the method: values of all beans are merged into one set of template variables.
+     */
+    private void nameBeanParam(MethodMetadata data, String name, int paramIndex) {
+        final Parameter[] parameters = data.method().getParameters();
+        for (Map.Entry<Integer, Collection<String>> entry : data.indexToName().entrySet()) {
+            final int otherIndex = entry.getKey();
+            checkState(
+                    otherIndex == paramIndex
+                            || !parameters[otherIndex].isAnnotationPresent(BeanParam.class)
+                            || !entry.getValue().contains(name),
+                    "BeanParam parameters %s and %s of %s both declare parameter %s",
+                    otherIndex,
+                    paramIndex,
+                    data.configKey(),
+                    name);
+        }
+        nameParam(data, name, paramIndex);
     }
 
     // Not using override as the super-type's method is deprecated and will be removed.
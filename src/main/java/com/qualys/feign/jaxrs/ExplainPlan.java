@@ -0,0 +1,376 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import com.qualys.feign.jaxrs.BeanParamInvocationHandlerFactory.BeanParamInvocationHandler;
+import com.qualys.feign.jaxrs.BeanParamInvocationHandlerFactory.BeanParamMethodHandler;
+import feign.Feign;
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.MethodMetadata;
+import feign.RequestTemplate;
+
+import jakarta.ws.rs.BeanParam;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * What a client decided for each of its methods: how parameters are classified, how bean properties are read and
+ * formatted, the variables of the request template, the fast paths that apply and the state of the method caches.
+ * {@link #toString()} renders it for humans, the accessors expose the same data.
+ *
+ * <pre>{@code
+ * QueryResource client = JAXRS3Profile.create().target(QueryResource.class, url);
+ * System.out.println(ExplainPlan.of(client));
+ * }</pre>
+ *
+ * Cache statistics are a snapshot taken when the plan is created.
+ */
+public final class ExplainPlan {
+    private final String client;
+    private final List<MethodPlan> methods;
+
+    private ExplainPlan(String client, List<MethodPlan> methods) {
+        this.client = client;
+        this.methods = methods;
+    }
+
+    /**
+     * @param client client built with {@link JAXRS3Profile} or {@link BeanParamInvocationHandlerFactory}
+     * @return plan of every method of the client, ordered by config key
+     * @throws IllegalArgumentException if the client was built otherwise
+     */
+    public static ExplainPlan of(Object client) {
+        InvocationHandler handler = Proxy.isProxyClass(client.getClass()) ? Proxy.getInvocationHandler(client) : null;
+        if (!(handler instanceof BeanParamInvocationHandler beanParamHandler))
+            throw new IllegalArgumentException(client.getClass().getName() + " is not a client built with "
+                    + JAXRS3Profile.class.getSimpleName());
+
+        Class<?> type = beanParamHandler.target.type();
+        List<MethodPlan> methods = new ArrayList<>();
+        for (Map.Entry<Method, MethodHandler> entry : beanParamHandler.dispatch.entrySet()) {
+            MethodMetadata metadata = beanParamHandler.metadata != null
+                    ? beanParamHandler.metadata.get(entry.getKey())
+                    : null;
+            methods.add(explain(type, entry.getKey(), entry.getValue(), metadata));
+        }
+        methods.sort(Comparator.comparing(MethodPlan::configKey));
+        return new ExplainPlan(beanParamHandler.target.toString(), List.copyOf(methods));
+    }
+
+    public String client() {
+        return client;
+    }
+
+    public List<MethodPlan> methods() {
+        return methods;
+    }
+
+    /**
+     * @param name method name
+     * @return plan of the first method with the name, by config key
+     * @throws IllegalArgumentException if the client has no such method
+     */
+    public MethodPlan method(String name) {
+        for (MethodPlan method : methods) {
+            if (method.configKey().startsWith(name + "(", method.configKey().indexOf('#') + 1))
+                return method;
+        }
+        throw new IllegalArgumentException("No method " + name + " in " + client);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(client).append('\n');
+        for (MethodPlan method : methods)
+            out.append(method);
+        return out.toString();
+    }
+
+    private static MethodPlan explain(Class<?> type, Method method, MethodHandler handler, MethodMetadata metadata) {
+        BeanParamTransformer beanTransformer = handler instanceof BeanParamMethodHandler beanHandler
+                ? beanHandler.transformer
+                : null;
+        List<ParameterPlan> parameters = new ArrayList<>();
+        Parameter[] declared = method.getParameters();
+        for (int i = 0; i < declared.length; i++)
+            parameters.add(classify(i, declared[i], metadata, beanTransformer));
+
+        String url = null;
+        Map<String, Collection<String>> headers = Map.of();
+        Map<String, Integer> variables = new TreeMap<>();
+        if (metadata != null) {
+            url = metadata.template().method() + " " + metadata.template().url();
+            headers = metadata.template().headers();
+            for (Map.Entry<Integer, Collection<String>> entry : metadata.indexToName().entrySet())
+                for (String name : entry.getValue())
+                    variables.put(name, entry.getKey());
+        }
+
+        List<PropertyPlan> properties = new ArrayList<>();
+        List<String> fastPaths = new ArrayList<>();
+        CacheStats cache = null;
+        if (handler instanceof BeanParamMethodHandler beanHandler) {
+            BeanParamTransformer transformer = beanHandler.transformer;
+            String[] beans = beanPaths(transformer);
+            for (int i = 0; i < transformer.names.length; i++) {
+                properties.add(property(transformer, beans, i));
+                for (String name : transformer.names[i])
+                    variables.putIfAbsent(name, transformer.indexes[0]);
+            }
+            cache = cacheStats(beanHandler);
+
+            if (beanHandler.fragments != null)
+                fastPaths.add("expanded url and headers memoized by bean values");
+            if (beanHandler.prototype.fixed)
+                fastPaths.add("request prototype reused without comparing templates");
+            else
+                fastPaths.add("request prototype reused while the templates match");
+            if (transformer.formParams.length > 0)
+                fastPaths.add("form body written in a single pass");
+            long primitives = Arrays.stream(transformer.formatters)
+                    .filter(formatter -> formatter instanceof ValueFormatter.PrimitiveFormatter)
+                    .count();
+            if (primitives > 0)
+                fastPaths.add(primitives + " primitive properties read without boxing");
+            if (transformer.pruned > 0)
+                fastPaths.add(transformer.pruned + " bean properties not read, the request does not use them");
+        }
+
+        return new MethodPlan(Feign.configKey(type, method), List.copyOf(parameters), List.copyOf(properties), url,
+                headers, variables, List.copyOf(fastPaths), cache);
+    }
+
+    /**
+     * Classifies a parameter the way the request is built from it: by the template the contract bound its name to, or
+     * as {@link BeanParamEncoder} treats the argument when the contract left it unnamed.
+     */
+    private static ParameterPlan classify(int index, Parameter parameter, MethodMetadata metadata,
+                                          BeanParamTransformer beans) {
+        String type = parameter.getParameterizedType().getTypeName();
+        if (beans != null && Arrays.stream(beans.indexes).anyMatch(bean -> bean == index))
+            return new ParameterPlan(index, "bean", null, type);
+        if (metadata == null)
+            return new ParameterPlan(index, "unknown", null, type);
+        if (metadata.shouldIgnoreParamater(index))
+            return new ParameterPlan(index, "ignored", null, type);
+        if (Objects.equals(metadata.urlIndex(), index))
+            return new ParameterPlan(index, "url", null, type);
+        if (Objects.equals(metadata.headerMapIndex(), index))
+            return new ParameterPlan(index, "header map", null, type);
+        if (Objects.equals(metadata.queryMapIndex(), index))
+            return new ParameterPlan(index, "query map", null, type);
+
+        List<Annotation> annotations = Arrays.asList(parameter.getAnnotations());
+        Collection<String> names = metadata.indexToName().get(index);
+        if (names == null || names.isEmpty()) {
+            // the encoder gets every argument the contract did not bind, whatever the annotations it did not handle
+            boolean unsupported = annotations.stream().anyMatch(annotation ->
+                    annotation.annotationType().getPackageName().startsWith(BeanParam.class.getPackageName()));
+            return new ParameterPlan(index, unsupported ? "unsupported" : "body", null, type);
+        }
+
+        String name = names.iterator().next();
+        if (BeanParamEncoder.isQueryMap(parameter.getType(), annotations))
+            return new ParameterPlan(index, "query map", name, type);
+        RequestTemplate template = metadata.template();
+        String variable = "{" + name + "}";
+        if (template.path().contains(variable))
+            return new ParameterPlan(index, "path", name, type);
+        if (uses(template.queries(), variable))
+            return new ParameterPlan(index, "query", name, type);
+        if (uses(template.headers(), variable))
+            return new ParameterPlan(index, "header", name, type);
+        // form parameters have no template, the encoder writes them
+        return new ParameterPlan(index, "form", name, type);
+    }
+
+    private static boolean uses(Map<String, Collection<String>> templates, String variable) {
+        for (Collection<String> values : templates.values())
+            for (String value : values)
+                if (value.contains(variable))
+                    return true;
+        return false;
+    }
+
+    /**
+     * @return expression reading each bean slot of the transformer, rooted at the method arguments
+     */
+    private static String[] beanPaths(BeanParamTransformer transformer) {
+        String[] paths = new String[transformer.beanOwners.length];
+        for (int i = 0; i < transformer.indexes.length; i++)
+            paths[i] = "arg" + transformer.indexes[i];
+        for (int i = transformer.indexes.length; i < paths.length; i++)
+            paths[i] = paths[transformer.beanOwners[i]] + "."
+                    + (transformer.beanFields[i] != null
+                    ? transformer.beanFields[i].getName()
+                    : transformer.beanGetters[i].getName() + "()");
+        return paths;
+    }
+
+    private static PropertyPlan property(BeanParamTransformer transformer, String[] beans, int i) {
+        List<String> kinds = new ArrayList<>();
+        if ((transformer.kinds[i] & BeanParamTransformer.QUERY) != 0)
+            kinds.add("QueryParam");
+        if ((transformer.kinds[i] & BeanParamTransformer.FORM) != 0)
+            kinds.add("FormParam");
+        if ((transformer.kinds[i] & BeanParamTransformer.HEADER) != 0)
+            kinds.add("HeaderParam");
+        if ((transformer.kinds[i] & BeanParamTransformer.PATH) != 0)
+            kinds.add("PathParam");
+
+        ValueFormatter formatter = transformer.formatters[i];
+        String access;
+        String path;
+        if (formatter instanceof ValueFormatter.PrimitiveFormatter) {
+            access = "method handle";
+            path = transformer.fields[i] != null ? transformer.fields[i].getName() : transformer.getters[i].getName() + "()";
+        } else if (transformer.fields[i] != null) {
+            access = "field";
+            path = transformer.fields[i].getName();
+        } else {
+            access = "getter";
+            path = transformer.getters[i].getName() + "()";
+        }
+        return new PropertyPlan(List.of(transformer.names[i]), List.copyOf(kinds),
+                beans[transformer.owners[i]] + "." + path, access, formatter.toString());
+    }
+
+    private static CacheStats cacheStats(BeanParamMethodHandler handler) {
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        long size = 0;
+        if (handler.fragments != null) {
+            com.google.common.cache.CacheStats stats = handler.fragments.stats();
+            hits = stats.hitCount();
+            misses = stats.missCount();
+            evictions = stats.evictionCount();
+            size = handler.fragments.size();
+        }
+        RequestPrototype prototype = handler.prototype.current();
+        return new CacheStats(handler.fragments != null, hits, misses, evictions, size,
+                handler.prototype.compilations.get(), prototype != null ? prototype.uriTemplates() : 0);
+    }
+
+    /**
+     * @param configKey  feign config key of the method
+     * @param parameters parameters in declaration order
+     * @param properties bean properties sent with the request, empty if the method has no {@code @BeanParam}
+     * @param url        http method and url template as parsed by the contract, {@code null} if unknown
+     * @param headers    header templates as parsed by the contract
+     * @param variables  template variables by the index of the argument they come from
+     * @param fastPaths  optimizations applying to the method
+     * @param cache      state of the method caches, {@code null} if the method has no {@code @BeanParam}
+     */
+    public record MethodPlan(String configKey, List<ParameterPlan> parameters, List<PropertyPlan> properties,
+                             String url, Map<String, Collection<String>> headers, Map<String, Integer> variables,
+                             List<String> fastPaths, CacheStats cache) {
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder("  ").append(configKey).append('\n');
+            if (url != null)
+                out.append("    request     ").append(url).append('\n');
+            for (Map.Entry<String, Collection<String>> header : headers.entrySet())
+                out.append("    header      ").append(header.getKey()).append(": ")
+                        .append(String.join(", ", header.getValue())).append('\n');
+            if (!variables.isEmpty())
+                out.append("    variables   ").append(variables).append('\n');
+            for (ParameterPlan parameter : parameters)
+                out.append("    parameter   ").append(parameter).append('\n');
+            for (PropertyPlan property : properties)
+                out.append("    property    ").append(property).append('\n');
+            for (String fastPath : fastPaths)
+                out.append("    fast path   ").append(fastPath).append('\n');
+            if (cache != null)
+                out.append("    cache       ").append(cache).append('\n');
+            return out.toString();
+        }
+    }
+
+    /**
+     * @param index position of the parameter
+     * @param kind  one of {@code bean}, {@code path}, {@code query}, {@code query map}, {@code header},
+     *              {@code header map}, {@code form}, {@code url}, {@code body}, {@code ignored}, {@code unsupported}
+     *              for a JAX-RS annotation the contract does not handle, whose argument reaches the encoder like a
+     *              body, or {@code unknown} if the client did not record its metadata
+     * @param name  name of the template variable, {@code null} unless the contract bound the parameter to one
+     * @param type  declared type
+     */
+    public record ParameterPlan(int index, String kind, String name, String type) {
+        @Override
+        public String toString() {
+            return "arg" + index + " " + kind + (name != null ? " " + name : "") + " (" + type + ")";
+        }
+    }
+
+    /**
+     * @param names     names the value is sent under
+     * @param kinds     simple names of the parameter annotations of the property
+     * @param path      expression reading the value, rooted at the method arguments
+     * @param access    {@code field}, {@code getter} or {@code method handle}
+     * @param formatter how the value is turned into strings
+     */
+    public record PropertyPlan(List<String> names, List<String> kinds, String path, String access, String formatter) {
+        @Override
+        public String toString() {
+            return String.join(",", names) + " " + kinds + " <- " + path + " by " + access + ", " + formatter;
+        }
+    }
+
+    /**
+     * @param memoized       whether expanded fragments are memoized
+     * @param hits           memo hits
+     * @param misses         memo misses
+     * @param evictions      memo evictions
+     * @param size           memoized entries
+     * @param compilations   times the request prototype was compiled, more than once means its templates changed
+     * @param uriTemplates   url templates parsed by the current prototype, one per combination of empty parameters
+     */
+    public record CacheStats(boolean memoized, long hits, long misses, long evictions, long size,
+                             int compilations, int uriTemplates) {
+        @Override
+        public String toString() {
+            Map<String, Object> values = new LinkedHashMap<>();
+            if (memoized) {
+                values.put("memo hits", hits);
+                values.put("misses", misses);
+                values.put("evictions", evictions);
+                values.put("size", size);
+            }
+            values.put("prototype compilations", compilations);
+            values.put("url templates", uriTemplates);
+            StringBuilder out = new StringBuilder();
+            values.forEach((key, value) -> out.append(out.length() > 0 ? ", " : "").append(key).append(' ').append(value));
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import java.util.Arrays;
+
+/**
+ * Writes {@code application/x-www-form-urlencoded} fields straight into a growable UTF-8 byte buffer.
+ * Collection and array values are written element by element, one field per element.
+ */
+final class FormBodyWriter {
+    static final String CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
+    private static final boolean[] UNESCAPED = new boolean[128];
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++)
+            UNESCAPED[c] = true;
+        for (int c = 'A'; c <= 'Z'; c++)
+            UNESCAPED[c] = true;
+        for (int c = '0'; c <= '9'; c++)
+            UNESCAPED[c] = true;
+        UNESCAPED['-'] = true;
+        UNESCAPED['.'] = true;
+        UNESCAPED['_'] = true;
+        UNESCAPED['*'] = true;
+    }
+
+    private byte[] buffer;
+    private int count;
+
+    FormBodyWriter() {
+        this(64);
+    }
+
+    FormBodyWriter(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Appends a field, skipping {@code null} values and {@code null} elements of collections and arrays.
+     *
+     * @param name  field name
+     * @param value field value
+     * @return this writer
+     */
+    FormBodyWriter field(String name, Object value) {
+        if (value instanceof Iterable<?> iterable) {
+            for (Object element : iterable)
+                pair(name, element);
+        } else if (value instanceof Object[] array) {
+            for (Object element : array)
+                pair(name, element);
+        } else {
+            pair(name, value);
+        }
+        return this;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    private void pair(String name, Object value) {
+        if (value == null)
+            return;
+
+        if (count > 0)
+            put('&');
+        encode(name);
+        put('=');
+        encode(value.toString());
+    }
+
+    private void encode(String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (UNESCAPED[c])
+                    put(c);
+                else if (c == ' ')
+                    put('+');
+                else
+                    escape(c);
+            } else if (c < 0x800) {
+                escape(0xC0 | (c >> 6));
+                escape(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                escape(0xF0 | (codePoint >> 18));
+                escape(0x80 | ((codePoint >> 12) & 0x3F));
+                escape(0x80 | ((codePoint >> 6) & 0x3F));
+                escape(0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, written as '?' like String.getBytes does
+                put('?');
+            } else {
+                escape(0xE0 | (c >> 12));
+                escape(0x80 | ((c >> 6) & 0x3F));
+                escape(0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void escape(int b) {
+        ensureCapacity(3);
+        buffer[count++] = '%';
+        buffer[count++] = HEX[(b >> 4) & 0xF];
+        buffer[count++] = HEX[b & 0xF];
+    }
+
+    private void put(int b) {
+        ensureCapacity(1);
+        buffer[count++] = (byte) b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (count + extra > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + extra));
+    }
+}
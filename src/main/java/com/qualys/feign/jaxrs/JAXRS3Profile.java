@@ -20,11 +20,35 @@ package com.qualys.feign.jaxrs;
 
 import feign.*;
 import feign.codec.Encoder;
+import jakarta.ws.rs.ext.ParamConverterProvider;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Created by sskrla on 10/13/15.
  */
 public class JAXRS3Profile extends Feign.Builder {
+    final BeanParamTransformerFactory transformerFactory = new BeanParamTransformerFactory();
+    final BodyCompression compression = new BodyCompression();
+    final MediaTypeEncoders encoders = new MediaTypeEncoders();
+    /**
+     * Encoder the bean encoder delegates to, kept to build a new one whenever a setting of it changes.
+     */
+    Encoder delegateEncoder;
+    BeanParamInvocationHandlerFactory handlerFactory;
+    /**
+     * Factory the bean handler factory delegates to, kept to build a new one whenever a setting of it changes.
+     */
+    InvocationHandlerFactory delegateHandlerFactory;
+    long fragmentCacheSize;
+    Contract contract;
+    ContractSnapshot snapshot;
+    int warmUpPasses;
+    boolean canonicalQueries;
+
     JAXRS3Profile() {
         encoder(new Encoder.Default());
         invocationHandlerFactory(new InvocationHandlerFactory.Default());
@@ -33,16 +57,207 @@ public class JAXRS3Profile extends Feign.Builder {
 
     @Override
     public JAXRS3Profile encoder(Encoder encoder) {
-        super.encoder(new BeanParamEncoder(encoder));
+        delegateEncoder = encoder;
+        super.encoder(new BeanParamEncoder(encoder, compression, encoders, canonicalQueries));
+        return this;
+    }
+
+    /**
+     * Encodes the bodies of methods consuming the media type with the encoder instead of the default one. Each method
+     * is bound to its encoder once, when its contract is parsed from {@code @Consumes}. Exact media types take
+     * precedence over {@code type/*} wildcards, methods matching neither keep the default encoder.
+     *
+     * @param mediaType media type such as {@code application/json}, or a wildcard such as {@code text/*}
+     * @param encoder   encoder of the bodies of that media type
+     * @return this profile
+     */
+    public JAXRS3Profile encoder(String mediaType, Encoder encoder) {
+        if (mediaType == null || mediaType.indexOf('/') <= 0)
+            throw new IllegalArgumentException("Not a media type: " + mediaType);
+        if (encoder == null)
+            throw new IllegalArgumentException("encoder must not be null");
+        encoders.register(mediaType.trim(), encoder);
+        return this;
+    }
+
+    @Override
+    public JAXRS3Profile contract(Contract contract) {
+        this.contract = contract;
+        Contract parsing = snapshot != null ? snapshot.contract(contract) : contract;
+        boolean canonical = canonicalQueries;
+        super.contract(targetType -> {
+            List<MethodMetadata> metadata = parsing.parseAndValidateMetadata(targetType);
+            Map<Method, MethodMetadata> parsed = new HashMap<>();
+            for (MethodMetadata md : metadata) {
+                if (canonical)
+                    QueryOrder.sort(md.template());
+                encoders.bind(md);
+                compression.bind(md);
+                parsed.put(md.method(), md);
+            }
+            // handed to the handler factory of this client alone, which feign calls next on this thread
+            handlerFactory.parsed.set(parsed);
+            return metadata;
+        });
         return this;
     }
 
     @Override
     public JAXRS3Profile invocationHandlerFactory(InvocationHandlerFactory factory) {
-        super.invocationHandlerFactory(new BeanParamInvocationHandlerFactory(factory));
+        delegateHandlerFactory = factory;
+        handlerFactory = new BeanParamInvocationHandlerFactory(factory, transformerFactory, fragmentCacheSize,
+                warmUpPasses > 0);
+        super.invocationHandlerFactory(handlerFactory);
+        return this;
+    }
+
+    /**
+     * Memoizes the expanded url and headers of {@code @BeanParam} methods, keyed by the bean values, so requests
+     * repeating the values of a recent one skip template expansion. Off by default, worth it for clients called
+     * over and over with a small set of distinct beans.
+     *
+     * @param maximumSize maximum number of memoized entries per method, {@code 0} turns memoization off
+     * @return this profile
+     */
+    public JAXRS3Profile memoizeEncoding(long maximumSize) {
+        if (maximumSize < 0)
+            throw new IllegalArgumentException("maximumSize must not be negative: " + maximumSize);
+        fragmentCacheSize = maximumSize;
+        return invocationHandlerFactory(delegateHandlerFactory);
+    }
+
+    /**
+     * Warms up clients before {@code target} returns them: method handlers are created in parallel, then every
+     * method of a throwaway instance of the client is called {@code passes} times with synthetic arguments on the
+     * common {@code ForkJoinPool}. The client returned reuses the bean transformers and request prototypes warmed up
+     * this way and calls its own client directly.
+     * <p>
+     * Warm-up requests are answered in process with an empty {@code 204} response and never reach the client. They
+     * skip the request and response interceptors, capabilities, logger and retryer of the profile; the decoder is
+     * called with the empty responses. Failures of warm-up calls are ignored.
+     *
+     * @param passes calls per method, {@code 0} turns warm-up off
+     * @return this profile
+     */
+    public JAXRS3Profile warmUp(int passes) {
+        if (passes < 0)
+            throw new IllegalArgumentException("passes must not be negative: " + passes);
+        warmUpPasses = passes;
+        return invocationHandlerFactory(delegateHandlerFactory);
+    }
+
+    @Override
+    public <T> T target(Target<T> target) {
+        if (warmUpPasses == 0)
+            return super.target(target);
+
+        T warm = warmUpBuilder().target(target);
+        ClientWarmUp.run(warm, warmUpPasses);
+        BeanParamInvocationHandlerFactory handlerFactory = this.handlerFactory;
+        handlerFactory.warmed.set(ClientWarmUp.beanParamHandlers(warm));
+        try {
+            return super.target(target);
+        } finally {
+            handlerFactory.warmed.remove();
+        }
+    }
+
+    /**
+     * @return builder of throwaway clients sharing the contract, codecs and handler factory of this profile, answered
+     * in process without interceptors, capabilities, logging or retries
+     */
+    private Feign.Builder warmUpBuilder() {
+        Feign.Builder builder = Feign.builder()
+                .contract(super.contract)
+                .encoder(super.encoder)
+                .decoder(decoder)
+                .queryMapEncoder(queryMapEncoder)
+                .errorDecoder(errorDecoder)
+                .options(options)
+                .invocationHandlerFactory(handlerFactory)
+                .exceptionPropagationPolicy(propagationPolicy)
+                .logger(new Logger.NoOpLogger())
+                .logLevel(Logger.Level.NONE)
+                .retryer(Retryer.NEVER_RETRY)
+                .client(new ClientWarmUp.WarmUpClient());
+        if (dismiss404)
+            builder.dismiss404();
+        if (decodeVoid)
+            builder.decodeVoid();
+        if (!closeAfterDecode)
+            builder.doNotCloseAfterDecode();
+        return builder;
+    }
+
+    /**
+     * Compresses request bodies of the given content type, for methods without {@link CompressedBody}. Bodies are
+     * compressed after encoding, {@code Content-Encoding} is set accordingly. Each method is bound to a rule once, when
+     * its contract is parsed from {@code @Consumes}; rules are matched in registration order.
+     *
+     * @param mediaType   content type of the bodies, such as {@code application/json}
+     * @param coding      compression to apply
+     * @param minimumSize size in bytes below which bodies are sent as they are
+     * @return this profile
+     */
+    public JAXRS3Profile compressBodies(String mediaType, CompressedBody.Coding coding, int minimumSize) {
+        if (minimumSize < 0)
+            throw new IllegalArgumentException("minimumSize must not be negative: " + minimumSize);
+        compression.register(mediaType, coding, minimumSize);
+        return this;
+    }
+
+    /**
+     * Sends query parameters sorted by name, so that requests with the same values have the same url whatever the
+     * declaration order of bean properties and parameters, and caches in front of the service see them as one. Query
+     * templates are sorted once per method; the entries of query maps, which vary, are sorted on every request.
+     *
+     * @param canonical {@code true} to sort query parameters, off by default
+     * @return this profile
+     */
+    public JAXRS3Profile canonicalQueryOrder(boolean canonical) {
+        canonicalQueries = canonical;
+        encoder(delegateEncoder);
+        return contract(contract);
+    }
+
+    /**
+     * Registers a JAX-RS converter provider used to format {@code @BeanParam} property values.
+     * Providers are consulted in registration order, once per property when the client is built.
+     *
+     * @param provider converter provider
+     * @return this profile
+     */
+    public JAXRS3Profile paramConverterProvider(ParamConverterProvider provider) {
+        transformerFactory.formatters.register(provider);
+        return this;
+    }
+
+    /**
+     * Chooses how {@code @BeanParam} properties are found: with {@code java.beans.Introspector}, or with plain
+     * reflection following the same naming rules. Native images default to reflection, which together with the
+     * metadata from {@link NativeImageMetadata} keeps {@code java.beans} out of the image.
+     *
+     * @param introspection {@code true} to use the introspector
+     * @return this profile
+     */
+    public JAXRS3Profile beanIntrospection(boolean introspection) {
+        transformerFactory.introspection = introspection;
         return this;
     }
 
+    /**
+     * Restores contracts and bean layouts from the snapshot when their classes did not change, and records the ones
+     * parsed live so that {@link ContractSnapshot#save()} can persist them.
+     *
+     * @param snapshot snapshot to use
+     * @return this profile
+     */
+    public JAXRS3Profile contractSnapshot(ContractSnapshot snapshot) {
+        this.snapshot = snapshot;
+        transformerFactory.snapshot = snapshot;
+        return contract(contract);
+    }
+
     public static JAXRS3Profile create() {
         return new JAXRS3Profile();
     }
@@ -0,0 +1,106 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import feign.MethodMetadata;
+import feign.codec.Encoder;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static jakarta.ws.rs.core.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Body encoders by media type. Each method is bound to the encoder of the content type it consumes when its contract
+ * is parsed, so encoding a body looks up the method instead of inspecting the headers of every request. Methods with
+ * no matching encoder keep the default one.
+ */
+final class MediaTypeEncoders {
+    final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final Map<Method, Encoder> methods = new ConcurrentHashMap<>();
+
+    /**
+     * @param mediaType content type the encoder writes, such as {@code application/json}; a {@code type/*} wildcard
+     *                  matches every subtype
+     * @param encoder   encoder of the bodies
+     */
+    void register(String mediaType, Encoder encoder) {
+        registrations.add(new Registration(mediaType, encoder));
+    }
+
+    /**
+     * Binds the method of the metadata to the encoder of the first of its content types with one. Exact media types
+     * are preferred to wildcards, registrations are matched in order.
+     */
+    void bind(MethodMetadata metadata) {
+        if (registrations.isEmpty() || metadata.method() == null)
+            return;
+
+        Encoder encoder = null;
+        Collection<String> contentTypes = metadata.template().headers().get(CONTENT_TYPE);
+        if (contentTypes != null) {
+            for (String contentType : contentTypes) {
+                encoder = find(contentType);
+                if (encoder != null)
+                    break;
+            }
+        }
+
+        if (encoder != null)
+            methods.put(metadata.method(), encoder);
+        else
+            methods.remove(metadata.method());
+    }
+
+    /**
+     * @return encoder bound to the method, {@code fallback} if none
+     */
+    Encoder forMethod(Method method, Encoder fallback) {
+        if (methods.isEmpty() || method == null)
+            return fallback;
+        Encoder encoder = methods.get(method);
+        return encoder != null ? encoder : fallback;
+    }
+
+    private Encoder find(String contentType) {
+        int parameters = contentType.indexOf(';');
+        String mediaType = (parameters >= 0 ? contentType.substring(0, parameters) : contentType).trim();
+        for (Registration registration : registrations) {
+            if (registration.mediaType.equalsIgnoreCase(mediaType))
+                return registration.encoder;
+        }
+
+        int subtype = mediaType.indexOf('/');
+        if (subtype < 0)
+            return null;
+        String wildcard = mediaType.substring(0, subtype + 1) + "*";
+        for (Registration registration : registrations) {
+            if (registration.mediaType.equalsIgnoreCase(wildcard))
+                return registration.encoder;
+        }
+        return null;
+    }
+
+    record Registration(String mediaType, Encoder encoder) {
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generates GraalVM reachability metadata for JAX-RS client interfaces: proxy configuration for the interfaces
+ * and reflection configuration for them and for every {@code @BeanParam} class they use, nested beans and
+ * superclasses included. Run it from the build with the interfaces on the classpath:
+ * <pre>
+ * java com.qualys.feign.jaxrs.NativeImageMetadata src/main/resources/META-INF/native-image/group/artifact com.acme.Resource
+ * </pre>
+ * Native images find bean properties without {@code java.beans.Introspector}, see
+ * {@link JAXRS3Profile#beanIntrospection(boolean)}.
+ */
+public final class NativeImageMetadata {
+    static final String REFLECT_CONFIG = "reflect-config.json";
+    static final String PROXY_CONFIG = "proxy-config.json";
+
+    private NativeImageMetadata() {
+    }
+
+    /**
+     * Writes {@value #REFLECT_CONFIG} and {@value #PROXY_CONFIG} for the interfaces into the directory.
+     *
+     * @param directory  output directory
+     * @param interfaces client interfaces
+     * @throws IOException if the files can not be written
+     */
+    public static void write(Path directory, Class<?>... interfaces) throws IOException {
+        Set<Class<?>> reflected = new LinkedHashSet<>();
+        for (Class<?> cls : interfaces)
+            reflected.addAll(ReflectionUtil.contractClasses(cls));
+
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(REFLECT_CONFIG), reflectConfig(reflected).getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve(PROXY_CONFIG), proxyConfig(Arrays.asList(interfaces)).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String reflectConfig(Set<Class<?>> classes) {
+        List<String> entries = new ArrayList<>();
+        for (Class<?> cls : classes) {
+            if (cls.isInterface())
+                entries.add(format("{\"name\": \"%s\", \"allPublicMethods\": true}", cls.getName()));
+            else
+                // fields are read and made accessible, getters and setters are discovered and invoked
+                entries.add(format("{\"name\": \"%s\", \"allDeclaredFields\": true, \"allDeclaredMethods\": true, "
+                        + "\"allPublicMethods\": true}", cls.getName()));
+        }
+        return array(entries);
+    }
+
+    static String proxyConfig(List<Class<?>> interfaces) {
+        List<String> entries = new ArrayList<>();
+        for (Class<?> cls : interfaces)
+            entries.add(format("{\"interfaces\": [\"%s\"]}", cls.getName()));
+        return array(entries);
+    }
+
+    private static String array(List<String> entries) {
+        return entries.isEmpty() ? "[]\n" : "[\n  " + String.join(",\n  ", entries) + "\n]\n";
+    }
+
+    private static String format(String format, String name) {
+        // binary class names only need '$' and '.', nothing JSON would escape
+        return String.format(format, name);
+    }
+
+    /**
+     * @param args output directory followed by the names of the client interfaces
+     * @throws Exception if an interface can not be loaded or the files written
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2)
+            throw new IllegalArgumentException("Usage: NativeImageMetadata <directory> <interface>...");
+
+        Class<?>[] interfaces = new Class<?>[args.length - 1];
+        for (int i = 1; i < args.length; i++)
+            interfaces[i - 1] = Class.forName(args[i]);
+        write(Paths.get(args[0]), interfaces);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import feign.RequestTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Canonical order of query parameters: sorted by name, parameters of the same name in their original order. Requests
+ * of the same values then have the same url whatever the declaration order of bean properties and method parameters,
+ * or the iteration order of query maps, so caches in front of the service see them as one.
+ */
+final class QueryOrder {
+    private static final Comparator<String> BY_NAME = Comparator.comparing(QueryOrder::name);
+
+    private QueryOrder() {
+    }
+
+    /**
+     * Sorts the query templates of a method, once when its contract is parsed.
+     */
+    static void sort(RequestTemplate template) {
+        if (template.queries().size() < 2)
+            return;
+        Map<String, Collection<String>> queries = new TreeMap<>(template.queries());
+        template.queries(Collections.emptyMap());
+        queries.forEach(template::query);
+    }
+
+    /**
+     * @param url url template, possibly with a query
+     * @return the url with its query parameters sorted
+     */
+    static String sort(String url) {
+        int query = url.indexOf('?');
+        if (query < 0 || url.indexOf('&', query) < 0)
+            return url;
+        String[] parameters = url.substring(query + 1).split("&");
+        Arrays.sort(parameters, BY_NAME);
+        return url.substring(0, query + 1) + String.join("&", parameters);
+    }
+
+    /**
+     * @return the entries of a query map sorted by the string form of their key
+     */
+    static Map<?, ?> sort(Map<?, ?> map) {
+        if (map.size() < 2)
+            return map;
+        List<Map.Entry<?, ?>> entries = new ArrayList<>(map.entrySet());
+        entries.sort(Comparator.comparing(entry -> String.valueOf(entry.getKey())));
+        Map<Object, Object> sorted = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : entries)
+            sorted.put(entry.getKey(), entry.getValue());
+        return sorted;
+    }
+
+    private static String name(String parameter) {
+        int separator = parameter.indexOf('=');
+        return separator < 0 ? parameter : parameter.substring(0, separator);
+    }
+}
@@ -18,10 +18,23 @@
 
 package com.qualys.feign.jaxrs;
 
+import jakarta.ws.rs.BeanParam;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Created by sskrla on 10/7/15.
@@ -49,4 +62,136 @@ final class ReflectionUtil {
 
         return fields.toArray(new Field[0]);
     }
+
+    /**
+     * Classes a contract is derived from: the interface, the interfaces it extends and the beans of its methods,
+     * with their superclasses and nested beans.
+     *
+     * @param targetType interface to analyze
+     * @return classes in discovery order
+     */
+    static Set<Class<?>> contractClasses(Class<?> targetType) {
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        List<Class<?>> interfaces = new ArrayList<>(List.of(targetType));
+        while (!interfaces.isEmpty()) {
+            Class<?> type = interfaces.remove(interfaces.size() - 1);
+            if (classes.add(type))
+                interfaces.addAll(Arrays.asList(type.getInterfaces()));
+        }
+
+        for (Method method : targetType.getMethods()) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            for (int i = 0; i < parameterTypes.length; i++)
+                if (method.getParameters()[i].isAnnotationPresent(BeanParam.class))
+                    addBeanClasses(parameterTypes[i], classes);
+        }
+        return classes;
+    }
+
+    /**
+     * @param beanClasses types of {@code @BeanParam} arguments
+     * @return the bean classes with their superclasses and nested beans, in discovery order
+     */
+    static Set<Class<?>> beanClasses(Type[] beanClasses) {
+        Set<Class<?>> classes = new LinkedHashSet<>();
+        for (Type beanClass : beanClasses)
+            addBeanClasses((Class<?>) beanClass, classes);
+        return classes;
+    }
+
+    private static void addBeanClasses(Class<?> beanClass, Set<Class<?>> classes) {
+        for (Class<?> cls = beanClass; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            if (!classes.add(cls))
+                return;
+
+            for (Field field : cls.getDeclaredFields())
+                if (field.isAnnotationPresent(BeanParam.class))
+                    addBeanClasses(field.getType(), classes);
+            for (Method method : cls.getDeclaredMethods())
+                if (method.isAnnotationPresent(BeanParam.class) && method.getParameterCount() == 1)
+                    addBeanClasses(method.getParameterTypes()[0], classes);
+        }
+    }
+
+    /**
+     * Finds bean properties from public {@code get}/{@code is} and {@code set} methods with plain reflection,
+     * following the naming rules of {@code java.beans.Introspector} without loading it.
+     *
+     * @param cls class to analyze
+     * @return properties by name, in name order like the introspector
+     */
+    static Map<String, BeanProperty> getBeanProperties(Class<?> cls) {
+        Map<String, Method> getters = new TreeMap<>();
+        Map<String, List<Method>> setters = new LinkedHashMap<>();
+        for (Method method : cls.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.isSynthetic())
+                continue;
+
+            String name = method.getName();
+            if (method.getParameterCount() == 0) {
+                if (name.startsWith("get") && name.length() > 3 && method.getReturnType() != void.class
+                        && !name.equals("getClass"))
+                    getters.put(decapitalize(name.substring(3)), method);
+                else if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class)
+                    getters.put(decapitalize(name.substring(2)), method);
+            } else if (method.getParameterCount() == 1 && name.startsWith("set") && name.length() > 3
+                    && method.getReturnType() == void.class) {
+                setters.computeIfAbsent(decapitalize(name.substring(3)), key -> new ArrayList<>()).add(method);
+            }
+        }
+
+        Map<String, BeanProperty> properties = new TreeMap<>();
+        for (Map.Entry<String, Method> getter : getters.entrySet()) {
+            Method setter = null;
+            for (Method candidate : setters.getOrDefault(getter.getKey(), List.of()))
+                if (candidate.getParameterTypes()[0] == getter.getValue().getReturnType())
+                    setter = candidate;
+            properties.put(getter.getKey(), new BeanProperty(getter.getValue().getReturnType(), getter.getValue(), setter));
+        }
+        for (Map.Entry<String, List<Method>> setter : setters.entrySet()) {
+            if (!properties.containsKey(setter.getKey()) && setter.getValue().size() == 1)
+                properties.put(setter.getKey(),
+                        new BeanProperty(setter.getValue().get(0).getParameterTypes()[0], null, setter.getValue().get(0)));
+        }
+        return properties;
+    }
+
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0)))
+            return name;
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Property discovery through {@code java.beans.Introspector}, kept apart so the reflection-only mode never loads
+     * {@code java.beans}.
+     */
+    static final class Introspection {
+        private Introspection() {
+        }
+
+        static Map<String, BeanProperty> getBeanProperties(Class<?> cls) {
+            try {
+                Map<String, BeanProperty> properties = new LinkedHashMap<>();
+                for (PropertyDescriptor prop : Introspector.getBeanInfo(cls).getPropertyDescriptors())
+                    properties.put(prop.getName(), new BeanProperty(prop.getPropertyType(), prop.getReadMethod(),
+                            prop.getWriteMethod()));
+                return properties;
+            } catch (IntrospectionException e) {
+                throw new RuntimeException(String.format("Unable to build bean info for %s", cls), e);
+            }
+        }
+    }
+
+    static final class BeanProperty {
+        final Class<?> type;
+        final Method getter;
+        final Method setter;
+
+        BeanProperty(Class<?> type, Method getter, Method setter) {
+            this.type = type;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
 }
@@ -0,0 +1,228 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import feign.RequestTemplate;
+import feign.template.HeaderTemplate;
+import feign.template.JaxrsUriTemplate;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Url and header templates of a {@code @BeanParam} method, parsed once. Literal chunks are encoded when the templates
+ * are parsed, so expanding a request only writes the bean values. Query parameters whose bean value is empty are
+ * left out of the url: one url template is parsed per combination of empty parameters actually seen, up to
+ * {@link #MAX_URI_TEMPLATES}; further combinations are parsed on every request. In canonical
+ * mode the query parameters are sorted by name when the prototype is compiled, see {@link QueryOrder}.
+ */
+final class RequestPrototype {
+    private static final Pattern VARIABLE = Pattern.compile("\\{(\\w+)}");
+    /**
+     * Url templates kept per prototype, a power of two. A bean with n optional query parameters has 2^n combinations.
+     */
+    static final int MAX_URI_TEMPLATES = 32;
+    private static final int HASH_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(MAX_URI_TEMPLATES);
+
+    final String url;
+    /**
+     * Url the requests are expanded from, {@link #url} with the query parameters sorted in canonical mode.
+     */
+    private final String uri;
+    final Map<String, Collection<String>> headers;
+    private final boolean encodeSlash;
+    private final Charset charset;
+    /**
+     * Bean parameters in the url, left out when empty; at most 64 so a {@code long} tells which ones are.
+     */
+    private final String[] optional;
+    /**
+     * Open addressed by the combination of empty parameters, so looking a template up boxes nothing.
+     */
+    private final AtomicReferenceArray<UriTemplate> uriTemplates = new AtomicReferenceArray<>(MAX_URI_TEMPLATES);
+    private final HeaderTemplate[] headerTemplates;
+    private final boolean[] headersFromBean;
+
+    private RequestPrototype(RequestTemplate template, BeanParamTransformer transformer, boolean canonical) {
+        this.url = template.url();
+        this.uri = canonical ? QueryOrder.sort(url) : url;
+        this.headers = template.headers();
+        this.encodeSlash = !template.decodeSlash();
+        this.charset = template.requestCharset();
+
+        List<String> optional = new ArrayList<>();
+        Matcher matcher = VARIABLE.matcher(uri);
+        while (matcher.find()) {
+            if (isFromBeanParam(matcher.group(1), transformer) && !optional.contains(matcher.group(1)))
+                optional.add(matcher.group(1));
+        }
+        this.optional = optional.size() <= Long.SIZE ? optional.toArray(new String[0]) : null;
+
+        this.headerTemplates = new HeaderTemplate[headers.size()];
+        this.headersFromBean = new boolean[headers.size()];
+        int i = 0;
+        for (Map.Entry<String, Collection<String>> header : headers.entrySet()) {
+            headerTemplates[i] = HeaderTemplate.create(header.getKey(), header.getValue());
+            headersFromBean[i] = isFromBeanParam(headerTemplates[i].getName(), transformer);
+            i++;
+        }
+    }
+
+    static RequestPrototype compile(RequestTemplate template, BeanParamTransformer transformer) {
+        return compile(template, transformer, false);
+    }
+
+    /**
+     * @param canonical whether to sort the query parameters, see {@link QueryOrder}
+     */
+    static RequestPrototype compile(RequestTemplate template, BeanParamTransformer transformer, boolean canonical) {
+        return new RequestPrototype(template, transformer, canonical);
+    }
+
+    /**
+     * @return number of url templates parsed so far, one per combination of empty parameters seen
+     */
+    int uriTemplates() {
+        int size = 0;
+        for (int i = 0; i < MAX_URI_TEMPLATES; i++)
+            if (uriTemplates.get(i) != null)
+                size++;
+        return size;
+    }
+
+    boolean matches(RequestTemplate template) {
+        return url.equals(template.url()) && headers.equals(template.headers());
+    }
+
+    /**
+     * @param values    bean values, deciding which query parameters are left out
+     * @param variables values to expand the templates with
+     * @param ctx       context the values come from
+     * @return expanded url, {@code null} if nothing resolved
+     */
+    String expandUri(Map<String, Object> values, Map<String, ?> variables, EncoderContext ctx) {
+        if (optional == null)
+            return create(BeanParamEncoder.removeEmptyQueryParameters(uri, ctx)).expand(variables);
+
+        long empty = 0;
+        for (int i = 0; i < optional.length; i++) {
+            Object value = values.get(optional[i]);
+            if (value == null || String.valueOf(value).isEmpty())
+                empty |= 1L << i;
+        }
+
+        return uriTemplate(empty, ctx).expand(variables);
+    }
+
+    /**
+     * @return url template leaving out the parameters flagged in {@code empty}, parsed anew if the table is full
+     */
+    private JaxrsUriTemplate uriTemplate(long empty, EncoderContext ctx) {
+        int start = Long.hashCode(empty) * 0x9E3779B9 >>> HASH_SHIFT;
+        for (int i = 0; i < MAX_URI_TEMPLATES; i++) {
+            int index = (start + i) & (MAX_URI_TEMPLATES - 1);
+            UriTemplate entry = uriTemplates.get(index);
+            if (entry == null) {
+                List<String> names = new ArrayList<>();
+                for (int j = 0; j < optional.length; j++)
+                    if ((empty & 1L << j) != 0)
+                        names.add(optional[j]);
+                entry = new UriTemplate(empty, create(BeanParamEncoder.removeQueryParameters(uri, names)));
+                if (uriTemplates.compareAndSet(index, null, entry))
+                    return entry.template;
+                entry = uriTemplates.get(index);
+            }
+            if (entry.empty == empty)
+                return entry.template;
+        }
+        return create(BeanParamEncoder.removeEmptyQueryParameters(uri, ctx));
+    }
+
+    /**
+     * Expands the headers; empty headers from beans are dropped, any other header keeps its template.
+     */
+    Map<String, Collection<String>> expandHeaders(Map<String, ?> variables) {
+        Map<String, Collection<String>> expanded = new LinkedHashMap<>();
+        for (int i = 0; i < headerTemplates.length; i++) {
+            HeaderTemplate headerTemplate = headerTemplates[i];
+            String expandedHeader = headerTemplate.expand(variables);
+            if (!expandedHeader.isEmpty())
+                expanded.put(headerTemplate.getName(), Collections.singletonList(expandedHeader));
+            else if (!headersFromBean[i])
+                expanded.put(headerTemplate.getName(), headerTemplate.getValues());
+        }
+        return expanded;
+    }
+
+    private JaxrsUriTemplate create(String template) {
+        return JaxrsUriTemplate.create(template, encodeSlash, charset);
+    }
+
+    private record UriTemplate(long empty, JaxrsUriTemplate template) {
+    }
+
+    static boolean isFromBeanParam(String paramName, BeanParamTransformer transformer) {
+        if (transformer != null)
+            for (String[] names : transformer.names)
+                for (String name : names)
+                    if (name.equals(paramName))
+                        return true;
+
+        return false;
+    }
+
+    /**
+     * Holds the prototype of a method. Templates of methods whose request is shaped by the beans alone never change,
+     * others are checked against the prototype and recompiled when the encoder wrote something else into them.
+     */
+    static final class Slot {
+        final boolean fixed;
+        final AtomicInteger compilations = new AtomicInteger();
+        private volatile RequestPrototype prototype;
+
+        Slot(boolean fixed) {
+            this.fixed = fixed;
+        }
+
+        RequestPrototype get(RequestTemplate template, BeanParamTransformer transformer, boolean canonical) {
+            RequestPrototype current = prototype;
+            if (current == null || !fixed && !current.matches(template)) {
+                prototype = current = compile(template, transformer, canonical);
+                compilations.incrementAndGet();
+            }
+            return current;
+        }
+
+        /**
+         * @return prototype compiled last, {@code null} before the first request
+         */
+        RequestPrototype current() {
+            return prototype;
+        }
+    }
+}
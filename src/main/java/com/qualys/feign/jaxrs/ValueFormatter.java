@@ -0,0 +1,231 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import jakarta.ws.rs.ext.ParamConverter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a bean property and turns its value into the string passed to the templates.
+ * A formatter is selected once per property by {@link ValueFormatterRegistry}.
+ */
+abstract class ValueFormatter {
+    static final ValueFormatter TO_STRING = new ValueFormatter() {
+        @Override
+        Object format(Object value) {
+            return value.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "toString()";
+        }
+    };
+
+    /**
+     * Passes the value as is, for query map properties expanded by {@link BeanParamEncoder} itself.
+     */
+    static final ValueFormatter IDENTITY = new ValueFormatter() {
+        @Override
+        Object format(Object value) {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "query map";
+        }
+    };
+
+    /**
+     * Reads the property, either through the field or through the getter, and formats it.
+     *
+     * @return formatted value, {@code null} if the property is {@code null}
+     */
+    Object read(Field field, Method getter, Object bean) throws Throwable {
+        Object value = field != null ? field.get(bean) : getter.invoke(bean);
+        return value != null ? format(value) : null;
+    }
+
+    /**
+     * @param value non-null property value
+     * @return a {@link String}, or a {@link List} of strings for multivalued properties
+     */
+    abstract Object format(Object value);
+
+    static class ConverterFormatter extends ValueFormatter {
+        final ParamConverter<Object> converter;
+
+        ConverterFormatter(ParamConverter<Object> converter) {
+            this.converter = converter;
+        }
+
+        @Override
+        Object format(Object value) {
+            return converter.toString(value);
+        }
+
+        @Override
+        public String toString() {
+            return "ParamConverter " + converter.getClass().getName();
+        }
+    }
+
+    static class EnumFormatter extends ValueFormatter {
+        final Class<?> enumClass;
+        final String[] values;
+
+        EnumFormatter(Class<?> enumClass) {
+            this.enumClass = enumClass;
+            Object[] constants = enumClass.getEnumConstants();
+            this.values = new String[constants.length];
+            for (int i = 0; i < constants.length; i++)
+                values[i] = constants[i].toString();
+        }
+
+        @Override
+        Object format(Object value) {
+            return values[((Enum<?>) value).ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            return "enum constants";
+        }
+    }
+
+    /**
+     * Creates a formatter reading a primitive property through a method handle typed {@code (Object)primitive},
+     * so the value is never boxed.
+     *
+     * @param reader getter or field handle adapted to {@code (Object)primitive}
+     * @param type   primitive type of the property
+     * @return formatter specialized for the type
+     */
+    static ValueFormatter primitive(MethodHandle reader, Class<?> type) {
+        if (type == int.class)
+            return new PrimitiveFormatter() {
+                @Override
+                Object read(Field field, Method getter, Object bean) throws Throwable {
+                    return Integer.toString((int) reader.invokeExact(bean));
+                }
+            };
+        if (type == long.class)
+            return new PrimitiveFormatter() {
+                @Override
+                Object read(Field field, Method getter, Object bean) throws Throwable {
+                    return Long.toString((long) reader.invokeExact(bean));
+                }
+            };
+        if (type == boolean.class)
+            return new PrimitiveFormatter() {
+                @Override
+                Object read(Field field, Method getter, Object bean) throws Throwable {
+                    return Boolean.toString((boolean) reader.invokeExact(bean));
+                }
+            };
+        if (type == double.class)
+            return new PrimitiveFormatter() {
+                @Override
+                Object read(Field field, Method getter, Object bean) throws Throwable {
+                    return Double.toString((double) reader.invokeExact(bean));
+                }
+            };
+        if (type == float.class)
+            return new PrimitiveFormatter() {
+                @Override
+                Object read(Field field, Method getter, Object bean) throws Throwable {
+                    return Float.toString((float) reader.invokeExact(bean));
+                }
+            };
+        if (type == short.class)
+            return new PrimitiveFormatter() {
+                @Override
+                Object read(Field field, Method getter, Object bean) throws Throwable {
+                    return Short.toString((short) reader.invokeExact(bean));
+                }
+            };
+        if (type == byte.class)
+            return new PrimitiveFormatter() {
+                @Override
+                Object read(Field field, Method getter, Object bean) throws Throwable {
+                    return Byte.toString((byte) reader.invokeExact(bean));
+                }
+            };
+        if (type == char.class)
+            return new PrimitiveFormatter() {
+                @Override
+                Object read(Field field, Method getter, Object bean) throws Throwable {
+                    return Character.toString((char) reader.invokeExact(bean));
+                }
+            };
+        throw new IllegalArgumentException(type + " is not primitive");
+    }
+
+    abstract static class PrimitiveFormatter extends ValueFormatter {
+        @Override
+        Object format(Object value) {
+            return value.toString();
+        }
+
+        @Override
+        public String toString() {
+            return "primitive, unboxed";
+        }
+    }
+
+    /**
+     * Formats every non-null element of a collection or an array with the element formatter.
+     */
+    static class MultiValueFormatter extends ValueFormatter {
+        final ValueFormatter elementFormatter;
+
+        MultiValueFormatter(ValueFormatter elementFormatter) {
+            this.elementFormatter = elementFormatter;
+        }
+
+        @Override
+        Object format(Object value) {
+            List<Object> formatted = new ArrayList<>();
+            if (value instanceof Iterable<?> iterable) {
+                for (Object element : iterable)
+                    if (element != null)
+                        formatted.add(elementFormatter.format(element));
+            } else {
+                for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                    Object element = Array.get(value, i);
+                    if (element != null)
+                        formatted.add(elementFormatter.format(element));
+                }
+            }
+            return formatted;
+        }
+
+        @Override
+        public String toString() {
+            return "each element with " + elementFormatter;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs;
+
+import jakarta.ws.rs.ext.ParamConverter;
+import jakarta.ws.rs.ext.ParamConverterProvider;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static java.lang.String.format;
+
+/**
+ * Selects how values of a bean property are formatted. JAX-RS {@link ParamConverterProvider}s take precedence,
+ * in registration order, then enums, primitives, collections and arrays get specialized formatters,
+ * everything else is formatted with {@code toString()}.
+ */
+class ValueFormatterRegistry {
+    private static final byte TO_STRING = 0;
+    private static final byte IDENTITY = 1;
+    private static final byte PRIMITIVE = 2;
+    private static final byte ENUM = 3;
+    private static final byte MULTI_VALUE = 4;
+    private static final byte CONVERTER = 5;
+
+    final List<ParamConverterProvider> providers = new CopyOnWriteArrayList<>();
+
+    void register(ParamConverterProvider provider) {
+        providers.add(provider);
+    }
+
+    /**
+     * @param field  field to read, {@code null} if the property is read through the getter
+     * @param getter getter to read, {@code null} if the property is read through the field
+     * @param annotations annotations of the property
+     * @return formatter of the property
+     */
+    ValueFormatter forProperty(Field field, Method getter, Annotation[] annotations) {
+        Class<?> type = field != null ? field.getType() : getter.getReturnType();
+        Type genericType = field != null ? field.getGenericType() : getter.getGenericReturnType();
+
+        ValueFormatter converted = forConverter(type, genericType, annotations);
+        if (converted != null)
+            return converted;
+
+        if (Map.class.isAssignableFrom(type))
+            return ValueFormatter.IDENTITY;
+
+        if (type.isPrimitive())
+            return ValueFormatter.primitive(primitiveReader(field, getter, type), type);
+
+        if (Iterable.class.isAssignableFrom(type) || type.isArray())
+            return new ValueFormatter.MultiValueFormatter(forElement(elementType(type, genericType), annotations));
+
+        return forElement(type, annotations);
+    }
+
+    /**
+     * Writes which formatter {@link #forProperty} selected, for {@link #read} to rebuild it without looking at the
+     * annotations and the type of the property again.
+     */
+    static void write(DataOutput out, ValueFormatter formatter) throws IOException {
+        if (formatter instanceof ValueFormatter.MultiValueFormatter multiValue) {
+            out.writeByte(MULTI_VALUE);
+            write(out, multiValue.elementFormatter);
+        } else if (formatter instanceof ValueFormatter.EnumFormatter enumFormatter) {
+            out.writeByte(ENUM);
+            out.writeUTF(enumFormatter.enumClass.getName());
+        } else if (formatter instanceof ValueFormatter.PrimitiveFormatter) {
+            out.writeByte(PRIMITIVE);
+        } else if (formatter instanceof ValueFormatter.ConverterFormatter) {
+            out.writeByte(CONVERTER);
+        } else {
+            out.writeByte(formatter == ValueFormatter.IDENTITY ? IDENTITY : TO_STRING);
+        }
+    }
+
+    /**
+     * @param field  field to read, {@code null} if the property is read through the getter
+     * @param getter getter to read, {@code null} if the property is read through the field
+     * @param loader loader of enum classes
+     * @return formatter written by {@link #write}, {@code null} if it must be selected again with
+     * {@link #forProperty}: converters come from the providers registered now, which may not be the ones it was
+     * selected with
+     */
+    ValueFormatter read(DataInput in, Field field, Method getter, ClassLoader loader)
+            throws IOException, ClassNotFoundException {
+
+        ValueFormatter formatter = read(in, loader, field, getter);
+        return providers.isEmpty() ? formatter : null;
+    }
+
+    private static ValueFormatter read(DataInput in, ClassLoader loader, Field field, Method getter)
+            throws IOException, ClassNotFoundException {
+
+        byte choice = in.readByte();
+        switch (choice) {
+            case MULTI_VALUE:
+                ValueFormatter element = read(in, loader, field, getter);
+                return element != null ? new ValueFormatter.MultiValueFormatter(element) : null;
+            case ENUM:
+                return new ValueFormatter.EnumFormatter(Class.forName(in.readUTF(), false, loader));
+            case PRIMITIVE:
+                Class<?> type = field != null ? field.getType() : getter.getReturnType();
+                return ValueFormatter.primitive(primitiveReader(field, getter, type), type);
+            case CONVERTER:
+                return null;
+            case IDENTITY:
+                return ValueFormatter.IDENTITY;
+            case TO_STRING:
+                return ValueFormatter.TO_STRING;
+            default:
+                throw new IOException("Unknown formatter " + choice);
+        }
+    }
+
+    private ValueFormatter forElement(Type elementType, Annotation[] annotations) {
+        Class<?> rawType = rawType(elementType);
+        ValueFormatter converted = forConverter(rawType, elementType, annotations);
+        if (converted != null)
+            return converted;
+
+        if (rawType.isEnum())
+            return new ValueFormatter.EnumFormatter(rawType);
+
+        return ValueFormatter.TO_STRING;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ValueFormatter forConverter(Class<?> rawType, Type genericType, Annotation[] annotations) {
+        for (ParamConverterProvider provider : providers) {
+            ParamConverter<?> converter = provider.getConverter(rawType, genericType, annotations);
+            if (converter != null)
+                return new ValueFormatter.ConverterFormatter((ParamConverter<Object>) converter);
+        }
+        return null;
+    }
+
+    private static MethodHandle primitiveReader(Field field, Method getter, Class<?> type) {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle handle;
+            if (field != null) {
+                handle = lookup.unreflectGetter(field);
+            } else {
+                getter.setAccessible(true);
+                handle = lookup.unreflect(getter);
+            }
+            return handle.asType(MethodType.methodType(type, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(format("Unable to access %s", field != null ? field : getter), e);
+        }
+    }
+
+    private static Type elementType(Class<?> type, Type genericType) {
+        if (type.isArray())
+            return genericType instanceof GenericArrayType array ? array.getGenericComponentType() : type.getComponentType();
+        if (genericType instanceof ParameterizedType parameterized && parameterized.getActualTypeArguments().length == 1)
+            return parameterized.getActualTypeArguments()[0];
+        return Object.class;
+    }
+
+    private static Class<?> rawType(Type type) {
+        if (type instanceof Class<?> cls)
+            return cls;
+        if (type instanceof ParameterizedType parameterized)
+            return (Class<?>) parameterized.getRawType();
+        return Object.class;
+    }
+}
@@ -0,0 +1,193 @@
+package feign;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes {@link MethodMetadata} produced by a contract in a compact binary form and reads it back without parsing
+ * the annotations again. Transient state (target type, method, return and body types) is restored from the target type
+ * on read.
+ * <p>
+ * Lives in the {@code feign} package because the constructor of {@link MethodMetadata} and its
+ * {@code alwaysEncodeBody} setter are package-private, and contracts are the only public way to create metadata.
+ * Setting them reflectively would need {@code setAccessible}, which fails when feign is a named module that does not
+ * open the package and needs extra native-image configuration. {@code feign.template.JaxrsUriTemplate} sits in
+ * feign's packages for the same reason.
+ */
+public final class MethodMetadataCodec {
+    private static final String PROBE_TARGET = "http://snapshot";
+
+    private MethodMetadataCodec() {
+    }
+
+    /**
+     * @param metadata metadata to check
+     * @return {@code true} if {@link #read} restores the metadata completely
+     */
+    public static boolean isSupported(MethodMetadata metadata) {
+        RequestTemplate template = metadata.template();
+        if (metadata.queryMapIndex() != null || metadata.queryMapEncoder() != null
+                || metadata.indexToExpander() != null && !metadata.indexToExpander().isEmpty()
+                || template.body() != null || template.bodyTemplate() != null
+                || !StandardCharsets.UTF_8.equals(template.requestCharset())
+                || metadata.method() == null || metadata.targetType() == null)
+            return false;
+
+        return Objects.equals(metadata.bodyType(), bodyType(metadata.targetType(), metadata.method(), metadata.bodyIndex()));
+    }
+
+    public static void write(DataOutput out, MethodMetadata metadata) throws IOException {
+        out.writeUTF(metadata.configKey());
+        out.writeBoolean(metadata.isIgnored());
+        writeIndex(out, metadata.urlIndex());
+        writeIndex(out, metadata.bodyIndex());
+        writeIndex(out, metadata.headerMapIndex());
+        out.writeBoolean(metadata.alwaysEncodeBody());
+
+        writeStrings(out, metadata.formParams());
+        out.writeInt(metadata.indexToName().size());
+        for (Map.Entry<Integer, Collection<String>> entry : metadata.indexToName().entrySet()) {
+            out.writeInt(entry.getKey());
+            writeStrings(out, entry.getValue());
+        }
+        out.writeInt(metadata.indexToExpanderClass().size());
+        for (Map.Entry<Integer, Class<? extends Param.Expander>> entry : metadata.indexToExpanderClass().entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeUTF(entry.getValue().getName());
+        }
+        out.writeInt(metadata.indexToEncoded().size());
+        for (Map.Entry<Integer, Boolean> entry : metadata.indexToEncoded().entrySet()) {
+            out.writeInt(entry.getKey());
+            out.writeBoolean(entry.getValue());
+        }
+        long[] ignored = metadata.parameterToIgnore().toLongArray();
+        out.writeInt(ignored.length);
+        for (long word : ignored)
+            out.writeLong(word);
+
+        RequestTemplate template = metadata.template();
+        writeNullable(out, template.method());
+        out.writeBoolean(template.decodeSlash());
+        out.writeUTF(template.collectionFormat().name());
+        // path() falls back to "/" for an empty uri, behind a target the uri is exactly what follows it
+        out.writeUTF(RequestTemplate.from(template).target(PROBE_TARGET).path().substring(PROBE_TARGET.length()));
+        writeTemplates(out, template.queries());
+        writeTemplates(out, template.headers());
+    }
+
+    /**
+     * @param in             input positioned at metadata written by {@link #write}
+     * @param targetType     interface the metadata was parsed from
+     * @param methodsByKey   methods of the interface by {@link Feign#configKey(Class, Method)}
+     * @return restored metadata
+     * @throws IOException            on read failure
+     * @throws ClassNotFoundException if an expander class is gone
+     */
+    public static MethodMetadata read(DataInput in, Class<?> targetType, Map<String, Method> methodsByKey)
+            throws IOException, ClassNotFoundException {
+
+        MethodMetadata metadata = new MethodMetadata();
+        String configKey = in.readUTF();
+        Method method = methodsByKey.get(configKey);
+        if (method == null)
+            throw new IOException("Method " + configKey + " is not declared by " + targetType.getName());
+
+        metadata.targetType(targetType);
+        metadata.method(method);
+        metadata.configKey(configKey);
+        metadata.returnType(Types.resolve(targetType, targetType, method.getGenericReturnType()));
+        if (in.readBoolean())
+            metadata.ignoreMethod();
+        metadata.urlIndex(readIndex(in));
+        metadata.bodyIndex(readIndex(in));
+        metadata.bodyType(bodyType(targetType, method, metadata.bodyIndex()));
+        metadata.headerMapIndex(readIndex(in));
+        metadata.alwaysEncodeBody(in.readBoolean());
+
+        metadata.formParams().addAll(readStrings(in));
+        for (int i = 0, size = in.readInt(); i < size; i++)
+            metadata.indexToName().put(in.readInt(), readStrings(in));
+        ClassLoader loader = targetType.getClassLoader();
+        for (int i = 0, size = in.readInt(); i < size; i++)
+            metadata.indexToExpanderClass().put(in.readInt(),
+                    Class.forName(in.readUTF(), false, loader).asSubclass(Param.Expander.class));
+        for (int i = 0, size = in.readInt(); i < size; i++)
+            metadata.indexToEncoded().put(in.readInt(), in.readBoolean());
+        long[] ignored = new long[in.readInt()];
+        for (int i = 0; i < ignored.length; i++)
+            ignored[i] = in.readLong();
+        metadata.parameterToIgnore(BitSet.valueOf(ignored));
+
+        RequestTemplate template = metadata.template();
+        String httpMethod = readNullable(in);
+        if (httpMethod != null)
+            template.method(Request.HttpMethod.valueOf(httpMethod));
+        boolean decodeSlash = in.readBoolean();
+        template.collectionFormat(CollectionFormat.valueOf(in.readUTF()));
+        // decodeSlash re-creates the uri template, which must be there already
+        template.uri(in.readUTF());
+        template.decodeSlash(decodeSlash);
+        for (int i = 0, size = in.readInt(); i < size; i++)
+            template.query(in.readUTF(), readStrings(in));
+        for (int i = 0, size = in.readInt(); i < size; i++)
+            template.header(in.readUTF(), readStrings(in));
+        return metadata;
+    }
+
+    private static Type bodyType(Class<?> targetType, Method method, Integer bodyIndex) {
+        return bodyIndex != null
+                ? Types.resolve(targetType, targetType, method.getGenericParameterTypes()[bodyIndex])
+                : null;
+    }
+
+    private static void writeIndex(DataOutput out, Integer index) throws IOException {
+        out.writeInt(index != null ? index : -1);
+    }
+
+    private static Integer readIndex(DataInput in) throws IOException {
+        int index = in.readInt();
+        return index >= 0 ? index : null;
+    }
+
+    private static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null)
+            out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutput out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values)
+            out.writeUTF(value);
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            values.add(in.readUTF());
+        return values;
+    }
+
+    private static void writeTemplates(DataOutput out, Map<String, Collection<String>> templates) throws IOException {
+        out.writeInt(templates.size());
+        for (Map.Entry<String, Collection<String>> entry : templates.entrySet()) {
+            out.writeUTF(entry.getKey());
+            writeStrings(out, entry.getValue());
+        }
+    }
+}
@@ -1,17 +1,119 @@
 package feign.template;
 
 import java.nio.charset.Charset;
+import java.util.Map;
 
 /**
  * @author RMakhmutov
  * @since 29.07.2020
  */
 public class JaxrsUriTemplate extends Template {
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    // unreserved characters of RFC 3986, the only ones UriUtils leaves unencoded in expanded values
+    private static final boolean[] UNRESERVED = new boolean[128];
+
+    static {
+        for (int c = 'a'; c <= 'z'; c++)
+            UNRESERVED[c] = true;
+        for (int c = 'A'; c <= 'Z'; c++)
+            UNRESERVED[c] = true;
+        for (int c = '0'; c <= '9'; c++)
+            UNRESERVED[c] = true;
+        UNRESERVED['-'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['~'] = true;
+    }
+
+    private final boolean encodeSlash;
+
     public static JaxrsUriTemplate create(String template, boolean encodeSlash, Charset charset) {
         return new JaxrsUriTemplate(template, encodeSlash, charset);
     }
 
     private JaxrsUriTemplate(String template, boolean encodeSlash, Charset charset) {
         super(template, ExpansionOptions.ALLOW_UNRESOLVED, Template.EncodingOptions.REQUIRED, encodeSlash, charset);
+        this.encodeSlash = encodeSlash;
+    }
+
+    /**
+     * Expands the template into a single buffer. Plain string values go through {@link #appendEncoded}
+     * and only fall back to the general expression expansion when it declines them.
+     */
+    @Override
+    public String expand(Map<String, ?> variables) {
+        if (variables == null) {
+            throw new IllegalArgumentException("variable map is required.");
+        }
+
+        StringBuilder resolved = new StringBuilder();
+        boolean any = false;
+        for (TemplateChunk chunk : getTemplateChunks()) {
+            if (!(chunk instanceof Expression expression)) {
+                resolved.append(chunk.getValue());
+                any = true;
+                continue;
+            }
+
+            if (isPlain(expression) && variables.get(expression.getName()) instanceof String value
+                    && appendEncoded(resolved, value, encodeSlash)) {
+                any = true;
+                continue;
+            }
+
+            String expanded = resolveExpression(expression, variables);
+            if (expanded != null) {
+                resolved.append(expanded);
+                any = true;
+            }
+        }
+
+        return any ? resolved.toString() : null;
+    }
+
+    /**
+     * Percent-encodes an ASCII value into the buffer in a single scan, appending it unchanged when nothing needs
+     * escaping. Declines, leaving the buffer untouched, values with non-ASCII characters and values containing
+     * {@code '%'}, which {@link UriUtils} may treat as already encoded.
+     *
+     * @param out         buffer to append to
+     * @param value       value to encode
+     * @param encodeSlash whether {@code '/'} is encoded
+     * @return {@code false} if the value must go through the general encoder
+     */
+    public static boolean appendEncoded(StringBuilder out, String value, boolean encodeSlash) {
+        int length = value.length();
+        int safe = 0;
+        while (safe < length) {
+            char c = value.charAt(safe);
+            if (c >= 128 || !(UNRESERVED[c] || c == '/' && !encodeSlash))
+                break;
+            safe++;
+        }
+
+        if (safe == length) {
+            out.append(value);
+            return true;
+        }
+
+        int start = out.length();
+        out.append(value, 0, safe);
+        for (int i = safe; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 128 || c == '%') {
+                out.setLength(start);
+                return false;
+            }
+
+            if (UNRESERVED[c] || c == '/' && !encodeSlash)
+                out.append(c);
+            else
+                out.append('%').append(HEX[c >> 4]).append(HEX[c & 0xF]);
+        }
+        return true;
+    }
+
+    private static boolean isPlain(Expression expression) {
+        return expression.getClass() == Expressions.SimpleExpression.class && expression.getPattern() == null;
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs
+
+import spock.lang.Requires
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Paths
+
+/**
+ * Fails when the bean encoding of a call allocates more than its budget in {@code allocation-budget.properties}.
+ */
+@Requires({ AllocationScenarios.supported })
+class AllocationBudgetTest extends Specification {
+    static final String BUDGET = "allocation-budget.properties"
+
+    @Shared
+    Map<String, Runnable> scenarios = AllocationScenarios.scenarios()
+    @Shared
+    Properties budget = load()
+
+    @Requires({ !System.getProperty("allocation.budget.update") })
+    def "#name allocates within its budget"() {
+        when:
+        def allocated = AllocationScenarios.bytesPerCall(scenarios[name], 5000, 5, 1000)
+
+        then:
+        budget.getProperty(name) != null
+        allocated <= (budget.getProperty(name) as long)
+
+        where:
+        name << AllocationScenarios.names()
+    }
+
+    @Requires({ System.getProperty("allocation.budget.update") })
+    def "update budgets"() {
+        given:
+        def file = Paths.get("src/test/resources", BUDGET)
+        def comments = Files.readAllLines(file).findAll { it.startsWith("#") }
+
+        when:
+        def budgets = scenarios.collect { name, call ->
+            // measured plus about 5%, rounded up to 100 bytes
+            def allocated = AllocationScenarios.bytesPerCall(call, 5000, 5, 1000)
+            "$name=${((long) Math.ceil(allocated * 1.05 / 100)) * 100}".toString()
+        }
+        Files.write(file, comments + budgets)
+
+        then:
+        budgets.size() == scenarios.size()
+    }
+
+    private static Properties load() {
+        def properties = new Properties()
+        AllocationBudgetTest.getResourceAsStream("/" + BUDGET).withCloseable { properties.load(it) }
+        properties
+    }
+}
@@ -23,7 +23,14 @@ import feign.Request
 import feign.Response
 import feign.jackson.JacksonDecoder
 import feign.jackson.JacksonEncoder
+import jakarta.ws.rs.ext.ParamConverter
+import jakarta.ws.rs.ext.ParamConverterProvider
 import spock.lang.Specification
+
+import java.lang.annotation.Annotation
+import java.lang.reflect.Type
+import java.time.LocalDate
+import java.time.format.DateTimeFormatter
 /**
  * Created by sskrla on 10/12/15.
  */
@@ -34,15 +41,19 @@ class BeanParamTest extends Specification {
             .decoder(new JacksonDecoder())
             .invocationHandlerFactory(new BeanParamInvocationHandlerFactory())
             .contract(new EncoderJAXRS3Contract())
-            .client(new Client() {
-                @Override
-                Response execute(Request request, Request.Options options) throws IOException {
-                    sent = request
-                    Response.builder().request(request).status(200).reason("OK").headers([:]).body(new byte[0]).build()
-                }
-            })
+            .client(recordingClient { sent = it })
             .target(QueryResource, "http://localhost")
 
+    /**
+     * @return client answering every request with an empty 200 response, once {@code recorder} got the request
+     */
+    static Client recordingClient(Closure<?> recorder) {
+        { Request request, Request.Options options ->
+            recorder(request)
+            Response.builder().request(request).status(200).reason("OK").headers([:]).body(new byte[0]).build()
+        } as Client
+    }
+
     def "query params"() {
         when:
         client.withParam(new QueryResource.QueryParamBean(param1: "one", param2: "two", param3: "three"))
@@ -83,6 +94,26 @@ class BeanParamTest extends Specification {
         sent.url() == "http://localhost/?three=three"
     }
 
+    def "all null query params not sent"() {
+        when:
+        client.withParam(new QueryResource.QueryParamBean())
+
+        then:
+        sent.url() == "http://localhost/"
+    }
+
+    def "null query params vary between calls"() {
+        expect:
+        [[[null, "two", null], "http://localhost/?two=two"],
+         [["one", null, "three"], "http://localhost/?one=one&three=three"],
+         [[null, null, null], "http://localhost/"],
+         [[null, "two", null], "http://localhost/?two=two"]].every { values, url ->
+            client.withParam(new QueryResource.QueryParamBean(param1: values[0], param2: values[1], param3: values[2]))
+            assert sent.url() == url
+            true
+        }
+    }
+
     def "header param"() {
         when:
         client.withHeader(new QueryResource.HeaderBeanParam(testParam1: "ing", testParam2: "ing2"))
@@ -104,6 +135,16 @@ class BeanParamTest extends Specification {
                 "}"
     }
 
+    def "map query param of a bean"() {
+        when:
+        client.withMapBean(new QueryResource.MapBeanParam(map: [testParam1: "ing"]))
+
+        then:
+        URLDecoder.decode(sent.url(), "UTF-8") == "http://localhost/mapBean?map={\n" +
+                "  \"testParam1\" : \"ing\"\n" +
+                "}"
+    }
+
     def "first null header param not sent"() {
         when:
         client.withHeader(new QueryResource.HeaderBeanParam(testParam2: "ing2"))
@@ -132,6 +173,15 @@ class BeanParamTest extends Specification {
         sent.headers().get("header2")[0] == ("headerTwo")
     }
 
+    def "method header param not sent as body"() {
+        when:
+        client.withMixed(5, "one", "three", new QueryResource.MixedBeanParam(id: 10), "headerOne")
+
+        then:
+        sent.headers().get("header1")[0] == ("headerOne")
+        sent.body() == null
+    }
+
     def "path param string"() {
         when:
         client.withPathString("test")
@@ -176,4 +226,208 @@ class BeanParamTest extends Specification {
         then:
         sent.url() == "http://localhost/path1/5/path2/10"
     }
+
+    def "nested bean params"() {
+        when:
+        client.withNested(new QueryResource.NestedBeanParam(id: 7, filter: new QueryResource.FilterBeanParam(
+                name: "test", tenant: "acme", paging: new QueryResource.PagingBeanParam(offset: 20, limit: 10))))
+
+        then:
+        sent.url() == "http://localhost/nested/7?name=test&offset=20&limit=10"
+        sent.headers().get("tenant")[0] == "acme"
+    }
+
+    def "null nested bean params not sent"() {
+        when:
+        client.withNested(new QueryResource.NestedBeanParam(id: 7, filter: new QueryResource.FilterBeanParam(name: "test")))
+
+        then:
+        sent.url() == "http://localhost/nested/7?name=test"
+        sent.headers().get("tenant") == null
+    }
+
+    def "multiple bean params"() {
+        when:
+        client.withMultiple(new QueryResource.PathBeanParam(id1: 42, id2: 123), "query",
+                new QueryResource.QueryParamBean(param1: "one", param3: "three"),
+                new QueryResource.HeaderBeanParam(testParam1: "ing"))
+
+        then:
+        sent.url() == "http://localhost/multiple/42/123?q=query&one=one&three=three"
+        sent.headers().get("test1")[0] == "ing"
+        sent.headers().get("test2") == null
+        sent.body() == null
+    }
+
+    def "null bean param among multiple not sent"() {
+        when:
+        client.withMultiple(new QueryResource.PathBeanParam(id1: 42, id2: 123), null, null,
+                new QueryResource.HeaderBeanParam(testParam2: "ing2"))
+
+        then:
+        sent.url() == "http://localhost/multiple/42/123"
+        sent.headers().get("test2")[0] == "ing2"
+    }
+
+    def "conflicting bean params rejected"() {
+        when:
+        Feign.builder()
+                .invocationHandlerFactory(new BeanParamInvocationHandlerFactory())
+                .contract(new EncoderJAXRS3Contract())
+                .target(resource, "http://localhost")
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message.contains("both declare parameter one")
+
+        where:
+        resource << [QueryResource.ConflictingResource, QueryResource.ConflictingSetterResource]
+    }
+
+    def "form params"() {
+        when:
+        client.withForm(new QueryResource.FormBeanParam(version: "2", name: "J\u00f6rg K", tags: ["a", null, "b&c"]), "hi")
+
+        then:
+        sent.url() == "http://localhost/form?version=2"
+        sent.headers().get("Content-Type")[0] == "application/x-www-form-urlencoded"
+        new String(sent.body(), "UTF-8") == "name=J%C3%B6rg+K&tags=a&tags=b%26c&note=hi"
+    }
+
+    def "null form params not sent"() {
+        when:
+        client.withForm(new QueryResource.FormBeanParam(version: "2", name: "test"), null)
+
+        then:
+        sent.url() == "http://localhost/form?version=2"
+        new String(sent.body(), "UTF-8") == "name=test"
+    }
+
+    def "formatted params"() {
+        given:
+        def format = DateTimeFormatter.ofPattern("dd.MM.yyyy")
+        def formatted = JAXRS3Profile.create()
+                .paramConverterProvider(new ParamConverterProvider() {
+                    @Override
+                    <T> ParamConverter<T> getConverter(Class<T> rawType, Type genericType, Annotation[] annotations) {
+                        if (rawType != LocalDate)
+                            return null
+                        return new ParamConverter<LocalDate>() {
+                            @Override
+                            LocalDate fromString(String value) {
+                                LocalDate.parse(value, format)
+                            }
+
+                            @Override
+                            String toString(LocalDate value) {
+                                value.format(format)
+                            }
+                        } as ParamConverter<T>
+                    }
+                })
+                .client(recordingClient { sent = it })
+                .target(QueryResource, "http://localhost")
+
+        when:
+        formatted.withFormatted(new QueryResource.FormattedBeanParam(status: QueryResource.Status.ACTIVE,
+                statuses: [QueryResource.Status.ACTIVE, null, QueryResource.Status.ARCHIVED] as QueryResource.Status[],
+                from: LocalDate.of(2020, 7, 29), count: 42L, active: true))
+
+        then:
+        sent.url() == "http://localhost/formatted?status=active&statuses=active&statuses=archived&from=29.07.2020&count=42&active=true"
+    }
+
+    def "memoized encoding"() {
+        given:
+        def memoized = JAXRS3Profile.create()
+                .memoizeEncoding(2)
+                .client(recordingClient { sent = it })
+                .target(QueryResource, "http://localhost")
+
+        expect:
+        [[5, "one", 10, "two", "headerTwo"], [6, "uno", 10, "two", "headerTwo"], [5, "one", 11, null, "headerTwo"],
+         [5, "one", 10, "two", "headerTwo"], [5, "one", 10, "{two}", null]].every { id1, param1, id, param, header ->
+            memoized.withMixed(id1, param1, "three", new QueryResource.MixedBeanParam(id: id, param: param, header: header), "headerOne")
+            def query = "param1=$param1&param3=three" + (param != null ? "&param2=${param.replace('{', '%7B').replace('}', '%7D')}" : "")
+            assert sent.url() == "http://localhost/path1/$id1/path2/$id?$query"
+            assert sent.headers().get("header1") == ["headerOne"]
+            assert sent.headers().get("header2") == (header != null ? [header] : null)
+            true
+        }
+    }
+
+    def "every combination of empty query params not sent"() {
+        given:
+        def names = ["a", "b", "c", "d", "e", "f"]
+
+        expect:
+        (0..<64).every { int combination ->
+            def set = names.findAll { combination & 1 << names.indexOf(it) }
+            client.withWideQuery(new QueryResource.WideQueryBeanParam(set.collectEntries { [(it): it] }))
+            assert sent.url() == "http://localhost/wide" + (set ? "?" + set.collect { "$it=$it" }.join("&") : "")
+            true
+        }
+    }
+
+    def "reflection finds the bean properties the introspector does"() {
+        given:
+        def introspected = ReflectionUtil.Introspection.getBeanProperties(bean).findAll { it.key != "class" }
+        def reflected = ReflectionUtil.getBeanProperties(bean)
+
+        expect:
+        reflected.keySet() as List == introspected.keySet() as List
+        reflected.every { name, property ->
+            property.type == introspected[name].type && property.getter == introspected[name].getter &&
+                    property.setter == introspected[name].setter
+        }
+
+        where:
+        bean << ReflectionUtil.contractClasses(QueryResource).findAll { !it.interface }
+    }
+
+    def "requests built without the introspector"() {
+        given:
+        def reflective = JAXRS3Profile.create()
+                .beanIntrospection(false)
+                .client(recordingClient { sent = it })
+                .target(QueryResource, "http://localhost")
+
+        when:
+        reflective.withExtendParam(new QueryResource.ExtendedSetterQueryParamBean(param1: "one", param2: "two", param3: "three"))
+
+        then:
+        sent.url() == "http://localhost/?one=one&two=two&three=three"
+
+        when:
+        reflective.withMixed(5, "one", "three", new QueryResource.MixedBeanParam(id: 10, param: "two", header: "headerTwo"), "headerOne")
+
+        then:
+        sent.url() == "http://localhost/path1/5/path2/10?param1=one&param3=three&param2=two"
+        sent.headers().get("header2") == ["headerTwo"]
+    }
+
+    def "bean properties the request does not use are not read"() {
+        given:
+        def pruned = JAXRS3Profile.create()
+                .client(recordingClient { sent = it })
+                .target(QueryResource, "http://localhost")
+        def plan = ExplainPlan.of(pruned)
+
+        when:
+        pruned.withPartialPath(new QueryResource.PathBeanParam(id1: 1, id2: 2), new QueryResource.HeaderBeanParam(testParam1: "one"))
+
+        then:
+        sent.url() == "http://localhost/partial/1"
+        sent.headers().get("test1") == ["one"]
+        plan.method("withPartialPath").properties()*.path() == ["arg0.getId1()", "arg1.getTestParam1()", "arg1.getTestParam2()"]
+        plan.method("withPartialPath").fastPaths().contains("1 bean properties not read, the request does not use them")
+        plan.method("withPath").properties()*.path() == ["arg0.getId1()", "arg0.getId2()"]
+
+        when:
+        pruned.withEnvelope(new QueryResource.EnvelopeBeanParam(query: "q", path: new QueryResource.PathBeanParam(id1: 1)))
+
+        then:
+        sent.url() == "http://localhost/envelope?q=q"
+        plan.method("withEnvelope").properties()*.path() == ["arg0.getQuery()"]
+    }
 }
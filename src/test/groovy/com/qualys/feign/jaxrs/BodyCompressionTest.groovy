@@ -0,0 +1,141 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs
+
+import feign.Request
+import feign.jackson.JacksonEncoder
+import spock.lang.Specification
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.InflaterInputStream
+
+class BodyCompressionTest extends Specification {
+    Request sent
+    def profile = JAXRS3Profile.create()
+            .encoder(new JacksonEncoder())
+            .client(BeanParamTest.recordingClient { sent = it })
+
+    def "annotated method body is gzipped"() {
+        given:
+        def client = profile.target(QueryResource, "http://localhost")
+        def name = "x" * 10_000
+
+        when:
+        client.withCompressedBody(new QueryResource.QueryParamBean(param1: "one"), new QueryResource.HeaderBeanParam(testParam1: "t"),
+                new QueryResource.PostModelParam(id: 1, name: name))
+
+        then:
+        sent.url() == "http://localhost/compressed?one=one"
+        sent.headers().get("Content-Encoding") == ["gzip"]
+        sent.headers().get("test1") == ["t"]
+        sent.headers().get("Content-Length") == [String.valueOf(sent.body().length)]
+        sent.body().length < 1_000
+        new GZIPInputStream(new ByteArrayInputStream(sent.body())).text == "{\n  \"id\" : 1,\n  \"name\" : \"$name\"\n}"
+    }
+
+    def "bodies below the minimum size are sent as they are"() {
+        given:
+        def client = profile.target(QueryResource, "http://localhost")
+
+        when:
+        client.withCompressedBody(new QueryResource.QueryParamBean(), null, new QueryResource.PostModelParam(id: 1))
+
+        then:
+        !sent.headers().containsKey("Content-Encoding")
+        new String(sent.body(), "UTF-8") == "{\n  \"id\" : 1\n}"
+    }
+
+    def "form bodies are deflated"() {
+        given:
+        def client = profile.target(QueryResource, "http://localhost")
+
+        when:
+        client.withDeflatedForm(new QueryResource.FormBeanParam(version: "2", name: "J\u00f6rg K", tags: ["a", "b&c"]), null)
+
+        then:
+        sent.url() == "http://localhost/deflated?version=2"
+        sent.headers().get("Content-Encoding") == ["deflate"]
+        new InflaterInputStream(new ByteArrayInputStream(sent.body())).text == "name=J%C3%B6rg+K&tags=a&tags=b%26c"
+    }
+
+    def "bodies are compressed by content type"() {
+        given:
+        def client = profile
+                .compressBodies("application/json", CompressedBody.Coding.GZIP, minimumSize)
+                .target(QueryResource, "http://localhost")
+
+        when:
+        client.withJsonBody(new QueryResource.PostModelParam(id: 1, name: "test"))
+        client.postModel(new QueryResource.PostModelParam(id: 1, name: "test"))
+
+        then:
+        sent.headers().get("Content-Encoding") == null
+
+        when:
+        client.withJsonBody(new QueryResource.PostModelParam(id: 1, name: "test"))
+
+        then:
+        sent.headers().get("Content-Encoding") == encoding
+
+        where:
+        minimumSize | encoding
+        0           | ["gzip"]
+        1000        | null
+    }
+
+    def "pooled compressors produce independent bodies"() {
+        given:
+        def client = profile.target(QueryResource, "http://localhost")
+
+        expect:
+        (1..20).every { i ->
+            def name = "name $i " * (i * 50)
+            client.withCompressedBody(new QueryResource.QueryParamBean(), null, new QueryResource.PostModelParam(id: i, name: name))
+            new GZIPInputStream(new ByteArrayInputStream(sent.body())).text.contains("\"name\" : \"$name\"")
+        }
+    }
+
+    def "methods are bound to their rule when the client is built"() {
+        when:
+        profile.compressBodies("application/json", CompressedBody.Coding.DEFLATE, 16)
+                .target(QueryResource, "http://localhost")
+
+        then:
+        profile.compression.forMethod(QueryResource.getMethod("withJsonBody", QueryResource.PostModelParam)) ==
+                new BodyCompression.Rule("application/json", CompressedBody.Coding.DEFLATE, 16)
+        profile.compression.forMethod(QueryResource.getMethod("withCompressedBody", QueryResource.QueryParamBean,
+                QueryResource.HeaderBeanParam, QueryResource.PostModelParam)).coding() == CompressedBody.Coding.GZIP
+        profile.compression.forMethod(QueryResource.getMethod("postModel", QueryResource.PostModelParam)) == null
+    }
+
+    def "large buffers are not kept in the pool"() {
+        given:
+        def client = profile.target(QueryResource, "http://localhost")
+        def random = new Random(42)
+        def name = (1..200_000).collect { (char) ('a' as char) + random.nextInt(26) }.join()
+
+        when:
+        client.withCompressedBody(new QueryResource.QueryParamBean(), null, new QueryResource.PostModelParam(id: 1, name: name))
+
+        then:
+        new GZIPInputStream(new ByteArrayInputStream(sent.body())).text.contains(name)
+        profile.compression.gzip.every { it.buffer.length <= BodyCompression.MAX_RETAINED_BUFFER_SIZE }
+        !profile.compression.gzip.isEmpty()
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs
+
+import feign.Request
+import feign.jackson.JacksonDecoder
+import feign.jackson.JacksonEncoder
+import spock.lang.Specification
+
+class CanonicalQueryOrderTest extends Specification {
+    Request sent
+    def profile = JAXRS3Profile.create()
+            .canonicalQueryOrder(true)
+            .encoder(new JacksonEncoder())
+            .decoder(new JacksonDecoder())
+            .client(BeanParamTest.recordingClient { sent = it })
+
+    def "bean query params are sorted by name"() {
+        given:
+        def client = profile.target(QueryResource, "http://localhost")
+
+        when:
+        client.withParam(new QueryResource.QueryParamBean(param1: "one", param2: "two", param3: "three"))
+
+        then:
+        sent.url() == "http://localhost/?one=one&three=three&two=two"
+    }
+
+    def "query params added while encoding are sorted"() {
+        given:
+        def client = profile.target(QueryResource, "http://localhost")
+
+        when:
+        client.withExtendParam(new QueryResource.ExtendedSetterQueryParamBean(param1: "one", param2: "two", param3: "three"))
+
+        then:
+        sent.url() == "http://localhost/?one=one&three=three&two=two"
+    }
+
+    def "method and bean query params are sorted together, empty ones left out"() {
+        given:
+        def client = profile.target(QueryResource, "http://localhost")
+
+        when:
+        client.withMultiple(new QueryResource.PathBeanParam(id1: 42, id2: 123), "query",
+                new QueryResource.QueryParamBean(param1: "one", param3: "three"),
+                new QueryResource.HeaderBeanParam(testParam1: "ing"))
+
+        then:
+        sent.url() == "http://localhost/multiple/42/123?one=one&q=query&three=three"
+    }
+
+    def "values of a multi-valued param keep their order"() {
+        given:
+        def client = profile.target(QueryResource, "http://localhost")
+
+        when:
+        client.withFormatted(new QueryResource.FormattedBeanParam(status: QueryResource.Status.ACTIVE,
+                statuses: [QueryResource.Status.ARCHIVED, QueryResource.Status.ACTIVE] as QueryResource.Status[],
+                count: 42L, active: true))
+
+        then:
+        sent.url() == "http://localhost/formatted?active=true&count=42&status=active&statuses=archived&statuses=active"
+    }
+
+    def "query map entries are sorted"() {
+        given:
+        def client = profile.target(QueryResource, "http://localhost")
+        def map = new LinkedHashMap(["c": "3", "a": "1", "b": "2"])
+
+        when:
+        client.mapQueryParam(map)
+
+        then:
+        URLDecoder.decode(sent.url(), "UTF-8") == "http://localhost/mapQueryParam?map={\n" +
+                "  \"a\" : \"1\",\n" +
+                "  \"b\" : \"2\",\n" +
+                "  \"c\" : \"3\"\n" +
+                "}"
+    }
+
+    def "memoized requests are sorted"() {
+        given:
+        def client = profile.memoizeEncoding(16).target(QueryResource, "http://localhost")
+
+        when:
+        def urls = (1..2).collect {
+            client.withParam(new QueryResource.QueryParamBean(param1: "one", param2: "two", param3: "three"))
+            sent.url()
+        }
+
+        then:
+        urls == ["http://localhost/?one=one&three=three&two=two"] * 2
+    }
+
+    def "declaration order is kept by default"() {
+        given:
+        def client = profile.canonicalQueryOrder(false).target(QueryResource, "http://localhost")
+
+        when:
+        client.withParam(new QueryResource.QueryParamBean(param1: "one", param2: "two", param3: "three"))
+
+        then:
+        sent.url() == "http://localhost/?one=one&two=two&three=three"
+    }
+
+    def "clients built before the setting changes keep their order"() {
+        given:
+        def sorted = profile.target(QueryResource, "http://localhost")
+        profile.canonicalQueryOrder(false)
+
+        when:
+        sorted.withParam(new QueryResource.QueryParamBean(param1: "one", param2: "two", param3: "three"))
+        def url = sent.url()
+        sorted.mapQueryParam(new LinkedHashMap(["b": "2", "a": "1"]))
+
+        then:
+        url == "http://localhost/?one=one&three=three&two=two"
+        URLDecoder.decode(sent.url(), "UTF-8") == "http://localhost/mapQueryParam?map={\n" +
+                "  \"a\" : \"1\",\n" +
+                "  \"b\" : \"2\"\n" +
+                "}"
+    }
+}
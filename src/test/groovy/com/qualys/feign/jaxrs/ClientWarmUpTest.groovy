@@ -0,0 +1,180 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs
+
+import feign.Logger
+import feign.Request
+import feign.RequestInterceptor
+import feign.RetryableException
+import feign.Retryer
+import spock.lang.Specification
+
+import java.lang.reflect.Proxy
+
+class ClientWarmUpTest extends Specification {
+    List<Request> sent = []
+    def recorder = BeanParamTest.recordingClient { sent << it }
+    def profile = JAXRS3Profile.create()
+            .memoizeEncoding(8)
+            .client(recorder)
+
+    def "warm-up requests do not reach the client"() {
+        when:
+        def client = profile.warmUp(3).target(QueryResource, "http://localhost")
+
+        then:
+        sent.isEmpty()
+
+        when:
+        client.withNested(new QueryResource.NestedBeanParam(id: 1))
+
+        then:
+        sent*.url() == ["http://localhost/nested/1"]
+    }
+
+    def "bean methods are warmed up without counting in the stats of the client"() {
+        when:
+        def plan = ExplainPlan.of(profile.warmUp(passes).target(QueryResource, "http://localhost"))
+
+        then:
+        ["withParam", "withPath", "withNested", "withMixed", "withMultiple", "withFormatted", "withForm"].each {
+            with(plan.method(it).cache()) {
+                assert uriTemplates() == (passes > 0 ? 1 : 0)
+                assert compilations() == 0
+                assert misses() == 0
+                assert hits() == 0
+                assert size() == 0
+            }
+        }
+
+        where:
+        passes << [0, 1, 4]
+    }
+
+    def "warm-up skips interceptors, logger and retryer"() {
+        given:
+        def intercepted = 0
+        def logged = 0
+        def retried = 0
+        def client = profile
+                .requestInterceptor { intercepted++ }
+                .logger(new Logger() {
+                    @Override
+                    protected void log(String configKey, String format, Object... args) {
+                        logged++
+                    }
+                })
+                .logLevel(Logger.Level.FULL)
+                .retryer(new Retryer.Default() {
+                    @Override
+                    void continueOrPropagate(RetryableException e) {
+                        retried++
+                        throw e
+                    }
+                })
+                .warmUp(2)
+                .target(QueryResource, "http://localhost")
+
+        expect:
+        intercepted == 0
+        logged == 0
+        retried == 0
+
+        when:
+        client.withNested(new QueryResource.NestedBeanParam(id: 1))
+
+        then:
+        intercepted == 1
+        logged > 0
+        sent.size() == 1
+    }
+
+    def "warm-up leaves the profile as configured"() {
+        given:
+        def interceptor = { } as RequestInterceptor
+        def logger = new Logger.JavaLogger("warm-up")
+        def retryer = new Retryer.Default()
+        profile.requestInterceptor(interceptor).logger(logger).logLevel(Logger.Level.BASIC).retryer(retryer).warmUp(2)
+
+        when:
+        profile.target(QueryResource, "http://localhost")
+
+        then:
+        profile.requestInterceptors == [interceptor]
+        profile.logger.is(logger)
+        profile.logLevel == Logger.Level.BASIC
+        profile.retryer.is(retryer)
+        profile.handlerFactory.warmed.get() == null
+    }
+
+    def "warmed up clients call their client directly"() {
+        given:
+        def client = profile.warmUp(2).target(QueryResource, "http://localhost")
+        def handlers = Proxy.getInvocationHandler(client).dispatch.values().collect {
+            it instanceof BeanParamInvocationHandlerFactory.BeanParamMethodHandler ? it.delegate : it
+        }
+
+        expect:
+        handlers.every {
+            def field = it.getClass().getDeclaredField("client")
+            field.accessible = true
+            field.get(it).is(recorder)
+        }
+    }
+
+    def "stats of warmed up clients count real requests only"() {
+        given:
+        def client = profile.warmUp(3).target(QueryResource, "http://localhost")
+
+        when:
+        client.withNested(new QueryResource.NestedBeanParam(id: 1))
+        client.withNested(new QueryResource.NestedBeanParam(id: 1))
+
+        then:
+        with(ExplainPlan.of(client).method("withNested").cache()) {
+            misses() == 1
+            hits() == 1
+            size() == 1
+        }
+    }
+
+    def "warmed up clients encode like cold ones"() {
+        given:
+        def cold = JAXRS3Profile.create().client(recorder).target(QueryResource, "http://localhost")
+        def warm = profile.warmUp(2).target(QueryResource, "http://localhost")
+        def bean = new QueryResource.MixedBeanParam(id: 2, param: "p2", header: "h2")
+
+        when:
+        cold.withMixed(1, "p1", null, bean, "h1")
+        warm.withMixed(1, "p1", null, bean, "h1")
+
+        then:
+        sent.size() == 2
+        sent[0].url() == sent[1].url()
+        sent[0].headers() == sent[1].headers()
+    }
+
+    def "negative passes are rejected"() {
+        when:
+        profile.warmUp(-1)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
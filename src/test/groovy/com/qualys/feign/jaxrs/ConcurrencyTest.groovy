@@ -0,0 +1,57 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs
+
+import spock.lang.IgnoreIf
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ConcurrencyTest extends Specification {
+    static final int REQUESTS_PER_THREAD = 40
+
+    @IgnoreIf({ data.virtual && !ConcurrentWorkload.virtualThreadsAvailable() })
+    def "shared client encodes every request correctly with #threads #kind threads, memoized: #memoized"() {
+        given:
+        def workload = new ConcurrentWorkload(memoized ? JAXRS3Profile.create().memoizeEncoding(64) : JAXRS3Profile.create())
+        def executor = ConcurrentWorkload.executor(virtual, threads)
+        def start = new CountDownLatch(1)
+
+        when:
+        def futures = (0..<threads).collect { thread ->
+            executor.submit({
+                start.await()
+                REQUESTS_PER_THREAD.times { iteration -> workload.request(thread, iteration) }
+            } as Callable<Void>)
+        }
+        start.countDown()
+        futures*.get(1, TimeUnit.MINUTES)
+        executor.shutdown()
+
+        then:
+        workload.mismatches().isEmpty()
+        workload.requests() == threads * REQUESTS_PER_THREAD
+
+        where:
+        [threads, virtual, memoized] << [[1, 16, 256], [false, true], [false, true]].combinations()
+        kind = virtual ? "virtual" : "platform"
+    }
+}
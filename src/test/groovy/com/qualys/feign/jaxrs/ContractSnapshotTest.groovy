@@ -0,0 +1,223 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs
+
+import feign.Request
+import jakarta.ws.rs.ext.ParamConverter
+import jakarta.ws.rs.ext.ParamConverterProvider
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.lang.annotation.Annotation
+import java.lang.reflect.AnnotatedElement
+import java.lang.reflect.Field
+import java.lang.reflect.Method
+import java.lang.reflect.Type
+import java.time.LocalDate
+
+class ContractSnapshotTest extends Specification {
+    @TempDir
+    Path directory
+    Request sent
+
+    def "restored contract matches the parsed one"() {
+        given:
+        def contract = new EncoderJAXRS3Contract()
+        def parsed = contract.parseAndValidateMetadata(QueryResource)
+        def file = directory.resolve("contracts.bin")
+        def snapshot = ContractSnapshot.open(file)
+        snapshot.contract(contract).parseAndValidateMetadata(QueryResource)
+        snapshot.save()
+
+        when:
+        def reopened = ContractSnapshot.open(file)
+        def restored = reopened.contract(contract).parseAndValidateMetadata(QueryResource)
+
+        then:
+        reopened.restored.get() == 1
+        reopened.parsed.get() == 0
+        restored.size() == parsed.size()
+        [parsed, restored].transpose().every { expected, actual ->
+            assert actual.configKey() == expected.configKey()
+            assert actual.method() == expected.method()
+            assert actual.returnType() == expected.returnType()
+            assert actual.template().method() == expected.template().method()
+            assert actual.template().url() == expected.template().url()
+            assert actual.template().headers() == expected.template().headers()
+            assert actual.indexToName() == expected.indexToName()
+            assert actual.formParams() == expected.formParams()
+            assert actual.bodyIndex() == expected.bodyIndex()
+            assert actual.alwaysEncodeBody() == expected.alwaysEncodeBody()
+            assert actual.parameterToIgnore() == expected.parameterToIgnore()
+            true
+        }
+    }
+
+    def "client built from a snapshot sends the same requests"() {
+        given:
+        def file = directory.resolve("contracts.bin")
+        def first = ContractSnapshot.open(file)
+        client(first)
+        first.save()
+        def second = ContractSnapshot.open(file)
+
+        when:
+        client(second).withMixed(5, "one", "three", new QueryResource.MixedBeanParam(id: 10, param: "two", header: "headerTwo"), "headerOne")
+
+        then:
+        first.parsed.get() > 0
+        second.parsed.get() == 0
+        second.restored.get() == first.parsed.get()
+        sent.url() == "http://localhost/path1/5/path2/10?param1=one&param3=three&param2=two"
+        sent.headers().get("header1") == ["headerOne"]
+        sent.headers().get("header2") == ["headerTwo"]
+    }
+
+    def "unreadable snapshot falls back to parsing"() {
+        given:
+        def file = directory.resolve("contracts.bin")
+        Files.write(file, [0x46, 0x4A, 0x53, 0x31, 0, 0, 0, 1, 0, 0] as byte[])
+        def snapshot = ContractSnapshot.open(file)
+
+        when:
+        client(snapshot).withPath(new QueryResource.PathBeanParam(id1: 42, id2: 123))
+        snapshot.save()
+
+        then:
+        snapshot.restored.get() == 0
+        sent.url() == "http://localhost/42/123"
+        with(ContractSnapshot.open(file)) {
+            contract(new EncoderJAXRS3Contract()).parseAndValidateMetadata(QueryResource).size() > 0
+            restored.get() == 1
+            parsed.get() == 0
+        }
+    }
+
+    def "contract parsed by another contract is parsed again"() {
+        given:
+        def file = directory.resolve("contracts.bin")
+        def snapshot = ContractSnapshot.open(file)
+        snapshot.contract(new EncoderJAXRS3Contract()).parseAndValidateMetadata(QueryResource)
+        snapshot.save()
+
+        when:
+        def reopened = ContractSnapshot.open(file)
+        reopened.contract(new EncoderJAXRS3Contract() {}).parseAndValidateMetadata(QueryResource)
+
+        then:
+        reopened.restored.get() == 0
+        reopened.parsed.get() == 1
+    }
+
+    def "contract whose classes changed is parsed again"() {
+        given:
+        def file = directory.resolve("contracts.bin")
+        def snapshot = ContractSnapshot.open(file)
+        snapshot.contract(new EncoderJAXRS3Contract()).parseAndValidateMetadata(QueryResource)
+        snapshot.save()
+
+        and: "the hash of the only contract no longer matches, as after the interface or the library changed"
+        byte[] bytes = Files.readAllBytes(file)
+        int hash = 4 + 4 + 4 + 2 + QueryResource.name.length() + 4
+        bytes[hash] = (byte) (bytes[hash] ^ 0xFF)
+        Files.write(file, bytes)
+
+        when:
+        def reopened = ContractSnapshot.open(file)
+        def metadata = reopened.contract(new EncoderJAXRS3Contract()).parseAndValidateMetadata(QueryResource)
+
+        then:
+        metadata.size() == QueryResource.methods.length
+        reopened.restored.get() == 0
+        reopened.parsed.get() == 1
+    }
+
+    def "restored layouts keep names, kinds and formatters without reading annotations"() {
+        given:
+        def file = directory.resolve("contracts.bin")
+        def beans = [QueryResource.FormattedBeanParam, QueryResource.MixedBeanParam] as Type[]
+        def first = ContractSnapshot.open(file)
+        def parsed = new BeanParamTransformerFactory(snapshot: first).createTransformer(beans, [0, 1] as int[], null)
+        first.save()
+        def second = ContractSnapshot.open(file)
+        def properties = 0
+        def factory = new BeanParamTransformerFactory() {
+            @Override
+            BeanParamTransformerFactory.BeanParamPropertyMetadata property(AnnotatedElement annotated, Field field,
+                                                                           Method getter, int owner) {
+                properties++
+                super.property(annotated, field, getter, owner)
+            }
+        }
+        factory.snapshot = second
+
+        when:
+        def restored = factory.createTransformer(beans, [0, 1] as int[], null)
+
+        then:
+        second.restored.get() == 1
+        properties == 0
+        restored.names == parsed.names
+        restored.kinds == parsed.kinds
+        restored.formatters*.toString() == parsed.formatters*.toString()
+        restored.formatters*.getClass()*.superclass == parsed.formatters*.getClass()*.superclass
+    }
+
+    def "formatters are selected again when converter providers are registered"() {
+        given:
+        def file = directory.resolve("contracts.bin")
+        def beans = [QueryResource.FormattedBeanParam] as Type[]
+        def first = ContractSnapshot.open(file)
+        new BeanParamTransformerFactory(snapshot: first).createTransformer(beans, [0] as int[], null)
+        first.save()
+        def factory = new BeanParamTransformerFactory(snapshot: ContractSnapshot.open(file))
+        factory.formatters.register(new ParamConverterProvider() {
+            @Override
+            <T> ParamConverter<T> getConverter(Class<T> rawType, Type genericType, Annotation[] annotations) {
+                rawType == LocalDate ? new ParamConverter<LocalDate>() {
+                    @Override
+                    LocalDate fromString(String value) {
+                        LocalDate.parse(value)
+                    }
+
+                    @Override
+                    String toString(LocalDate value) {
+                        value.year as String
+                    }
+                } : null
+            }
+        })
+
+        when:
+        def restored = factory.createTransformer(beans, [0] as int[], null)
+
+        then:
+        factory.snapshot.restored.get() == 1
+        restored.formatters[restored.names.findIndexOf { it == ["from"] as String[] }] instanceof ValueFormatter.ConverterFormatter
+    }
+
+    private QueryResource client(ContractSnapshot snapshot) {
+        JAXRS3Profile.create()
+                .contractSnapshot(snapshot)
+                .client(BeanParamTest.recordingClient { sent = it })
+                .target(QueryResource, "http://localhost")
+    }
+}
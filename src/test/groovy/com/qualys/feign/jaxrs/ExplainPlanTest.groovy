@@ -0,0 +1,193 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs
+
+import feign.Feign
+import feign.InvocationHandlerFactory
+import spock.lang.Specification
+
+import java.lang.reflect.Proxy
+
+class ExplainPlanTest extends Specification {
+    def client = JAXRS3Profile.create()
+            .memoizeEncoding(8)
+            .client(BeanParamTest.recordingClient {})
+            .target(QueryResource, "http://localhost")
+
+    def "parameters are classified"() {
+        when:
+        def plan = ExplainPlan.of(client).method("withMixed")
+
+        then:
+        plan.parameters()*.kind() == ["path", "query", "query", "bean", "header"]
+        plan.parameters()*.name() == ["id1", "param1", "param3", null, "header1"]
+        plan.url() == "GET /path1/{id1}/path2/{id2}?param1={param1}&param3={param3}&param2={param2}"
+        plan.headers().keySet() == ["header1", "header2"] as Set
+        plan.variables() == [id1: 0, param1: 1, param3: 2, header1: 4, id2: 3, param2: 3, header2: 3]
+    }
+
+    def "parameters are classified from the parsed contract"() {
+        given:
+        def unbound = JAXRS3Profile.create().client(BeanParamTest.recordingClient {})
+                .target(UnboundParamResource, "http://localhost")
+
+        when:
+        def plan = ExplainPlan.of(unbound).method("withUnbound")
+
+        then:
+        plan.parameters()*.kind() == ["path", "unsupported", "unsupported", "ignored", "body"]
+        plan.parameters()*.name() == ["id", null, null, null, null]
+    }
+
+    def "parameters of #method are classified as #kinds"() {
+        expect:
+        ExplainPlan.of(client).method(method).parameters()*.kind() == kinds
+
+        where:
+        method               | kinds
+        "mapQueryParam"      | ["query map"]
+        "withPathString"     | ["path"]
+        "withForm"           | ["bean", "form"]
+        "withCompressedBody" | ["bean", "bean", "body"]
+    }
+
+    def "bean properties are resolved with their access strategy"() {
+        when:
+        def plan = ExplainPlan.of(client).method(method)
+
+        then:
+        plan.properties().collectEntries { [(it.names()[0]): [it.kinds(), it.path(), it.access(), it.formatter()]] } == properties
+
+        where:
+        method          | properties
+        "withMixed"     | [id2    : [["PathParam"], "arg3.getId()", "method handle", "primitive, unboxed"],
+                           param2 : [["QueryParam"], "arg3.getParam()", "getter", "toString()"],
+                           header2: [["HeaderParam"], "arg3.getHeader()", "getter", "toString()"]]
+        "withNested"    | [id     : [["PathParam"], "arg0.getId()", "method handle", "primitive, unboxed"],
+                           name   : [["QueryParam"], "arg0.getFilter().getName()", "getter", "toString()"],
+                           tenant : [["HeaderParam"], "arg0.getFilter().getTenant()", "getter", "toString()"],
+                           offset : [["QueryParam"], "arg0.getFilter().getPaging().getOffset()", "getter", "toString()"],
+                           limit  : [["QueryParam"], "arg0.getFilter().getPaging().getLimit()", "getter", "toString()"]]
+        "withFormatted" | [status  : [["QueryParam"], "arg0.getStatus()", "getter", "enum constants"],
+                           statuses: [["QueryParam"], "arg0.getStatuses()", "getter", "each element with enum constants"],
+                           from    : [["QueryParam"], "arg0.getFrom()", "getter", "toString()"],
+                           count   : [["QueryParam"], "arg0.count", "method handle", "primitive, unboxed"],
+                           active  : [["QueryParam"], "arg0.isActive()", "method handle", "primitive, unboxed"]]
+    }
+
+    def "fast paths and cache statistics"() {
+        given:
+        client.withParam(new QueryResource.QueryParamBean(param1: "one"))
+        client.withParam(new QueryResource.QueryParamBean(param1: "one"))
+        client.withParam(new QueryResource.QueryParamBean(param1: "one", param2: "two"))
+
+        when:
+        def plan = ExplainPlan.of(client)
+
+        then:
+        with(plan.method("withParam")) {
+            fastPaths() == ["expanded url and headers memoized by bean values",
+                            "request prototype reused without comparing templates"]
+            cache() == new ExplainPlan.CacheStats(true, 1, 2, 0, 2, 1, 2)
+        }
+        with(plan.method("withForm")) {
+            fastPaths() == ["request prototype reused while the templates match", "form body written in a single pass"]
+            cache() == new ExplainPlan.CacheStats(false, 0, 0, 0, 0, 0, 0)
+        }
+        plan.method("postModel").fastPaths().isEmpty()
+        plan.method("postModel").cache() == null
+        plan.method("postModel").parameters()*.kind() == ["body"]
+    }
+
+    def "memoization applies whatever the order of builder calls, to clients built afterwards"() {
+        given:
+        def profile = JAXRS3Profile.create().client(BeanParamTest.recordingClient {})
+        def before = profile.target(QueryResource, "http://localhost")
+        def memoized = profile.memoizeEncoding(8).invocationHandlerFactory(new InvocationHandlerFactory.Default())
+                .target(QueryResource, "http://localhost")
+
+        expect:
+        ExplainPlan.of(memoized).method("withParam").cache().memoized()
+        !ExplainPlan.of(before).method("withParam").cache().memoized()
+    }
+
+    def "url templates are bounded per method"() {
+        given:
+        def names = ["a", "b", "c", "d", "e", "f"]
+        (0..<64).each { int combination ->
+            def set = names.findAll { combination & 1 << names.indexOf(it) }
+            client.withWideQuery(new QueryResource.WideQueryBeanParam(set.collectEntries { [(it): it] }))
+        }
+
+        expect:
+        ExplainPlan.of(client).method("withWideQuery").cache().uriTemplates() == RequestPrototype.MAX_URI_TEMPLATES
+    }
+
+    def "human readable dump"() {
+        when:
+        def dump = ExplainPlan.of(client).toString()
+
+        then:
+        dump.startsWith("HardCodedTarget(type=QueryResource, url=http://localhost)")
+        dump.contains("""
+  QueryResource#withMultiple(PathBeanParam,String,QueryParamBean,HeaderBeanParam)
+    request     GET /multiple/{id1}/{id2}?q={q}&one={one}&two={two}&three={three}
+""")
+        dump.contains("    parameter   arg1 query q (java.lang.String)\n")
+        dump.contains("    property    test1 [HeaderParam] <- arg3.getTestParam1() by getter, toString()\n")
+        dump.contains("    cache       memo hits 0, misses 0, evictions 0, size 0, prototype compilations 0, url templates 0\n")
+    }
+
+    def "clients built otherwise are rejected"() {
+        when:
+        ExplainPlan.of(Feign.builder().contract(new EncoderJAXRS3Contract()).target(QueryResource, "http://localhost"))
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "clients keep the identity of feign clients"() {
+        given:
+        def same = JAXRS3Profile.create().target(QueryResource, "http://localhost")
+        def other = JAXRS3Profile.create().target(QueryResource, "http://other")
+        def plain = Feign.builder().contract(new EncoderJAXRS3Contract()).target(QueryResource, "http://localhost")
+
+        expect:
+        client.equals(client)
+        client.hashCode() == client.hashCode()
+        client.hashCode() == plain.hashCode()
+        client.toString() == plain.toString()
+        client.equals(same)
+        !client.equals(other)
+        !client.equals(plain)
+        !client.equals(null)
+        !client.equals("http://localhost")
+    }
+
+    def "each client keeps the metadata of its own methods only"() {
+        given:
+        def profile = JAXRS3Profile.create()
+        def first = profile.target(QueryResource, "http://localhost")
+        def second = profile.target(QueryResource, "http://other")
+
+        expect:
+        Proxy.getInvocationHandler(first).metadata.keySet() == QueryResource.methods as Set
+        !Proxy.getInvocationHandler(first).metadata.is(Proxy.getInvocationHandler(second).metadata)
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs
+
+import feign.Request
+import feign.RequestTemplate
+import feign.codec.Encoder
+import feign.jackson.JacksonEncoder
+import spock.lang.Specification
+
+import java.lang.reflect.Type
+import java.nio.charset.StandardCharsets
+
+class MediaTypeEncodersTest extends Specification {
+    Request sent
+    def profile = JAXRS3Profile.create()
+            .encoder(writing("default"))
+            .client(BeanParamTest.recordingClient { sent = it })
+
+    static Encoder writing(String name) {
+        { Object body, Type type, RequestTemplate template ->
+            template.body("$name:$body".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)
+        } as Encoder
+    }
+
+    def "bodies are encoded by the encoder of the consumed media type"() {
+        given:
+        def client = profile
+                .encoder("application/json", new JacksonEncoder())
+                .encoder("text/plain", writing("text"))
+                .target(QueryResource, "http://localhost")
+
+        when:
+        client.withJsonBody(new QueryResource.PostModelParam(id: 1, name: "json"))
+
+        then:
+        new String(sent.body(), StandardCharsets.UTF_8) == "{\n  \"id\" : 1,\n  \"name\" : \"json\"\n}"
+
+        when:
+        client.withTextBody("hello")
+
+        then:
+        new String(sent.body(), StandardCharsets.UTF_8) == "text:hello"
+    }
+
+    def "methods without a matching media type keep the default encoder"() {
+        given:
+        def client = profile
+                .encoder("application/json", new JacksonEncoder())
+                .target(QueryResource, "http://localhost")
+
+        when:
+        client.postModel(new QueryResource.PostModelParam(id: 1))
+        def unconsumed = new String(sent.body(), StandardCharsets.UTF_8)
+        client.withTextBody("hello")
+        def unmatched = new String(sent.body(), StandardCharsets.UTF_8)
+
+        then:
+        unconsumed.startsWith("default:")
+        unmatched == "default:hello"
+    }
+
+    def "exact media types take precedence over wildcards"() {
+        given:
+        def client = profile
+                .encoder("text/*", writing("any text"))
+                .encoder("TEXT/PLAIN", writing("plain text"))
+                .target(QueryResource, "http://localhost")
+
+        when:
+        client.withTextBody("hello")
+
+        then:
+        new String(sent.body(), StandardCharsets.UTF_8) == "plain text:hello"
+    }
+
+    def "wildcards match every subtype"() {
+        given:
+        def client = profile
+                .encoder("text/*", writing("any text"))
+                .target(QueryResource, "http://localhost")
+
+        when:
+        client.withTextBody("hello")
+
+        then:
+        new String(sent.body(), StandardCharsets.UTF_8) == "any text:hello"
+    }
+
+    def "encoders survive replacing the default encoder"() {
+        given:
+        def client = profile
+                .encoder("text/plain", writing("text"))
+                .encoder(writing("other"))
+                .target(QueryResource, "http://localhost")
+
+        when:
+        client.withTextBody("hello")
+
+        then:
+        new String(sent.body(), StandardCharsets.UTF_8) == "text:hello"
+    }
+
+    def "query maps of methods consuming a media type keep the default encoder"() {
+        given:
+        def client = profile
+                .encoder("text/plain", writing("text"))
+                .target(QueryResource, "http://localhost")
+
+        when:
+        client.withTextQueryMap([k: "v"])
+
+        then:
+        URLDecoder.decode(sent.url(), "UTF-8") == "http://localhost/textQueryMap?map=default:[k:v]"
+        sent.body() == null
+    }
+
+    def "media types are validated"() {
+        when:
+        profile.encoder(mediaType, new JacksonEncoder())
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        mediaType << [null, "json", "/json"]
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.qualys.feign.jaxrs
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.nio.file.Path
+
+class NativeImageMetadataTest extends Specification {
+    @TempDir
+    Path directory
+
+    def "metadata covers the interface and its beans"() {
+        when:
+        NativeImageMetadata.write(directory, QueryResource)
+        def reflect = new ObjectMapper().readValue(directory.resolve(NativeImageMetadata.REFLECT_CONFIG).toFile(), List)
+        def proxy = new ObjectMapper().readValue(directory.resolve(NativeImageMetadata.PROXY_CONFIG).toFile(), List)
+
+        then:
+        proxy == [[interfaces: [QueryResource.name]]]
+        reflect.find { it.name == QueryResource.name }.allPublicMethods
+        [QueryResource.PathBeanParam, QueryResource.NestedBeanParam, QueryResource.PagingBeanParam,
+         QueryResource.ExtendedSetterQueryParamBean, QueryResource.ParamBeanForExtend].every { bean ->
+            def entry = reflect.find { it.name == bean.name }
+            entry != null && entry.allDeclaredFields && entry.allDeclaredMethods
+        }
+    }
+}
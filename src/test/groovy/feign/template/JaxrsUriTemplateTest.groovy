@@ -0,0 +1,54 @@
+package feign.template
+
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+
+class JaxrsUriTemplateTest extends Specification {
+    def "fast path expands as the general encoder does"() {
+        given:
+        def template = "/items/{id}?filter={filter}"
+        def variables = [id: value, filter: value]
+
+        expect:
+        JaxrsUriTemplate.create(template, encodeSlash, StandardCharsets.UTF_8).expand(variables) ==
+                UriTemplate.create(template, encodeSlash, StandardCharsets.UTF_8).expand(variables)
+
+        where:
+        value                                  | encodeSlash
+        "12345"                                | true
+        "active"                               | true
+        "3f2504e0-4f89-11d3-9a0c-0305e82c3301" | true
+        "a/b"                                  | true
+        "a/b"                                  | false
+        "name with spaces & {braces}"          | true
+        "already%20encoded"                    | true
+        "100%"                                 | true
+        "J\u00f6rg"                          | true
+        ""                                     | true
+    }
+
+    def "unresolved variables are kept"() {
+        expect:
+        JaxrsUriTemplate.create("/items/{id}/{other}", true, StandardCharsets.UTF_8).expand([id: "1"]) ==
+                "/items/1/%7Bother%7D"
+    }
+
+    def "value is appended unchanged when nothing needs escaping"() {
+        given:
+        def out = new StringBuilder("x=")
+
+        expect:
+        JaxrsUriTemplate.appendEncoded(out, "abc-123", true)
+        out.toString() == "x=abc-123"
+    }
+
+    def "declined value leaves the buffer untouched"() {
+        given:
+        def out = new StringBuilder("x=")
+
+        expect:
+        !JaxrsUriTemplate.appendEncoded(out, "a b\u00f6", true)
+        out.toString() == "x="
+    }
+}
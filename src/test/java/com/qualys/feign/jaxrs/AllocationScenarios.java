@@ -0,0 +1,161 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.qualys.feign.jaxrs;
+
+import com.qualys.feign.jaxrs.BeanParamInvocationHandlerFactory.BeanParamInvocationHandler;
+import com.qualys.feign.jaxrs.BeanParamInvocationHandlerFactory.BeanParamMethodHandler;
+import feign.InvocationHandlerFactory.MethodHandler;
+import feign.MethodMetadata;
+import feign.RequestTemplate;
+import feign.codec.Encoder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bean encoding of representative calls of {@link QueryResource} and a meter of the bytes they allocate on the
+ * calling thread. Each call transforms the beans and encodes the arguments into a copy of the template the contract
+ * parsed, as the client does before sending, so what is measured is the bean encoding without feign around it.
+ */
+public final class AllocationScenarios {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private AllocationScenarios() {
+    }
+
+    public static boolean isSupported() {
+        return THREADS.isThreadAllocatedMemorySupported();
+    }
+
+    /**
+     * @return calls by scenario name, in a stable order
+     */
+    public static Map<String, Runnable> scenarios() {
+        QueryResource client = JAXRS3Profile.create().target(QueryResource.class, "http://localhost");
+        BeanParamInvocationHandler handler = (BeanParamInvocationHandler) Proxy.getInvocationHandler(client);
+        BeanParamEncoder encoder = new BeanParamEncoder(new Encoder.Default(), new BodyCompression(),
+                new MediaTypeEncoders());
+
+        Map<String, Runnable> scenarios = new LinkedHashMap<>();
+        for (Map.Entry<String, Object[]> call : arguments().entrySet()) {
+            Method method = Arrays.stream(QueryResource.class.getMethods())
+                    .filter(candidate -> candidate.getName().equals(call.getKey()))
+                    .findFirst()
+                    .orElseThrow();
+            MethodMetadata metadata = handler.metadata.get(method);
+            MethodHandler methodHandler = handler.dispatch.get(method);
+            Object[] args = call.getValue();
+            scenarios.put(call.getKey(), () -> {
+                Object[] argv = args.clone();
+                if (methodHandler instanceof BeanParamMethodHandler beanHandler)
+                    argv = beanHandler.encoderArguments(argv);
+                RequestTemplate template = RequestTemplate.from(metadata.template());
+                template.feignTarget(handler.target);
+                encoder.encode(argv, metadata.bodyType(), template);
+            });
+        }
+        return scenarios;
+    }
+
+    /**
+     * @return arguments of the measured calls by method name, in a stable order
+     */
+    private static Map<String, Object[]> arguments() {
+        QueryResource.QueryParamBean query = new QueryResource.QueryParamBean();
+        query.param1 = "one";
+        query.param3 = "three";
+        QueryResource.ExtendedSetterQueryParamBean extended = new QueryResource.ExtendedSetterQueryParamBean();
+        extended.setParam1("one");
+        extended.setParam2("two");
+        QueryResource.HeaderBeanParam header = new QueryResource.HeaderBeanParam();
+        header.testParam1 = "ing";
+        header.testParam2 = "ing2";
+        QueryResource.PathBeanParam path = new QueryResource.PathBeanParam();
+        path.id1 = 42;
+        path.id2 = 123;
+        QueryResource.MixedBeanParam mixed = new QueryResource.MixedBeanParam();
+        mixed.id = 10;
+        mixed.param = "two";
+        mixed.header = "headerTwo";
+        QueryResource.PagingBeanParam paging = new QueryResource.PagingBeanParam();
+        paging.offset = 20;
+        paging.limit = 10;
+        QueryResource.FilterBeanParam filter = new QueryResource.FilterBeanParam();
+        filter.name = "test";
+        filter.tenant = "acme";
+        filter.paging = paging;
+        QueryResource.NestedBeanParam nested = new QueryResource.NestedBeanParam();
+        nested.id = 7;
+        nested.filter = filter;
+        QueryResource.FormBeanParam form = new QueryResource.FormBeanParam();
+        form.version = "2";
+        form.name = "J\u00f6rg K";
+        form.tags = Arrays.asList("a", null, "b&c");
+        QueryResource.FormattedBeanParam formatted = new QueryResource.FormattedBeanParam();
+        formatted.status = QueryResource.Status.ACTIVE;
+        formatted.statuses = new QueryResource.Status[]{QueryResource.Status.ACTIVE, QueryResource.Status.ARCHIVED};
+        formatted.from = LocalDate.of(2020, 7, 29);
+        formatted.count = 42;
+        formatted.active = true;
+
+        Map<String, Object[]> arguments = new LinkedHashMap<>();
+        arguments.put("withParam", new Object[]{query});
+        arguments.put("withExtendParam", new Object[]{extended});
+        arguments.put("withHeader", new Object[]{header});
+        arguments.put("withPath", new Object[]{path});
+        arguments.put("withPathString", new Object[]{"test"});
+        arguments.put("withMixed", new Object[]{5, "one", "three", mixed, "headerOne"});
+        arguments.put("withNested", new Object[]{nested});
+        arguments.put("withMultiple", new Object[]{path, "query", query, header});
+        arguments.put("withForm", new Object[]{form, "hi"});
+        arguments.put("withFormatted", new Object[]{formatted});
+        return arguments;
+    }
+
+    /**
+     * Runs the call {@code warmup} times, then takes the lowest average over {@code rounds} rounds of
+     * {@code calls} calls, which filters out one-off allocations of the JIT and of class loading.
+     *
+     * @return bytes allocated per call
+     */
+    public static long bytesPerCall(Runnable call, int warmup, int rounds, int calls) {
+        for (int i = 0; i < warmup; i++)
+            call.run();
+
+        long thread = Thread.currentThread().getId();
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long before = THREADS.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < calls; i++)
+                call.run();
+            lowest = Math.min(lowest, (THREADS.getThreadAllocatedBytes(thread) - before) / calls);
+        }
+        return lowest;
+    }
+
+    public static List<String> names() {
+        return List.copyOf(arguments().keySet());
+    }
+}
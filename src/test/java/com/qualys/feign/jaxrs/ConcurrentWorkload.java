@@ -0,0 +1,143 @@
+/*
+ * Licensed to Qualys, Inc. (QUALYS) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * QUALYS licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.qualys.feign.jaxrs;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requests issued concurrently through one shared client. The stub client runs on the calling thread and checks
+ * every request against the one expected by that thread, so mixed up values between threads are caught.
+ */
+public class ConcurrentWorkload {
+    private final ThreadLocal<Expected> expected = new ThreadLocal<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final Queue<String> mismatches = new ConcurrentLinkedQueue<>();
+    private final QueryResource client;
+
+    public ConcurrentWorkload(JAXRS3Profile profile) {
+        this.client = profile
+                .client(new Client() {
+                    @Override
+                    public Response execute(Request request, Request.Options options) {
+                        verify(request);
+                        return Response.builder().request(request).status(200).reason("OK").headers(Map.of())
+                                .body(new byte[0]).build();
+                    }
+                })
+                .target(QueryResource.class, "http://localhost");
+    }
+
+    /**
+     * Issues one request whose values depend on the thread and the iteration. Values repeat often enough for
+     * memoized encoding to hit, and some are {@code null} so different query parameters are left out.
+     */
+    public void request(int thread, int iteration) {
+        String param = "v" + (thread + iteration) % 3 + (iteration % 11 == 0 ? " {x}" : "");
+        String header = iteration % 4 == 0 ? null : "h" + iteration % 4;
+        if (iteration % 2 == 0) {
+            String query = "param1=p" + iteration % 7 + "&param3=three&param2=" + param.replace(" ", "%20")
+                    .replace("{", "%7B").replace("}", "%7D");
+            expected.set(new Expected("http://localhost/path1/" + thread + "/path2/" + iteration % 5 + "?" + query,
+                    header != null ? List.of(header) : null));
+            QueryResource.MixedBeanParam bean = new QueryResource.MixedBeanParam();
+            bean.setId(iteration % 5);
+            bean.setParam(param);
+            bean.setHeader(header);
+            client.withMixed(thread, "p" + iteration % 7, "three", bean, "headerOne");
+        } else {
+            String one = iteration % 3 == 0 ? null : "t" + thread;
+            String three = iteration % 5 == 0 ? null : "i" + iteration % 9;
+            String query = (one != null ? "one=" + one : "") + (one != null && three != null ? "&" : "")
+                    + (three != null ? "three=" + three : "");
+            expected.set(new Expected("http://localhost/" + (query.isEmpty() ? "" : "?" + query), null));
+            QueryResource.QueryParamBean bean = new QueryResource.QueryParamBean();
+            bean.setParam1(one);
+            bean.setParam3(three);
+            client.withParam(bean);
+        }
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public Collection<String> mismatches() {
+        return mismatches;
+    }
+
+    private void verify(Request request) {
+        requests.incrementAndGet();
+        Expected current = expected.get();
+        Collection<String> header = request.headers().get("header2");
+        List<String> header2 = header != null ? List.copyOf(header) : null;
+        if (!current.url.equals(request.url()) || !Objects.equals(current.header2, header2))
+            mismatches.add("expected " + current.url + " " + current.header2 + " but was " + request.url() + " " + header2);
+    }
+
+    /**
+     * @return whether this JVM has virtual threads, which came with Java 21
+     */
+    public static boolean virtualThreadsAvailable() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param virtual whether to run tasks on virtual threads, looked up reflectively as the build targets Java 17
+     * @param threads number of platform threads
+     * @return executor running every task on its own virtual thread, or a fixed pool of platform threads
+     */
+    public static ExecutorService executor(boolean virtual, int threads) {
+        if (!virtual)
+            return Executors.newFixedThreadPool(threads);
+
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21", e);
+        }
+    }
+
+    private static final class Expected {
+        final String url;
+        final List<String> header2;
+
+        Expected(String url, List<String> header2) {
+            this.url = url;
+            this.header2 = header2;
+        }
+    }
+}
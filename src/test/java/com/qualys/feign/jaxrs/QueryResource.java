@@ -20,6 +20,8 @@ package com.qualys.feign.jaxrs;
 
 import jakarta.ws.rs.*;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -60,6 +62,74 @@ public interface QueryResource {
     @POST
     void postModel(PostModelParam model);
 
+    @GET
+    @Path("nested/{id}")
+    String withNested(@BeanParam NestedBeanParam bean);
+
+    @GET
+    @Path("multiple/{id1}/{id2}")
+    String withMultiple(@BeanParam PathBeanParam path, @QueryParam("q") String query,
+                        @BeanParam QueryParamBean params, @BeanParam HeaderBeanParam headers);
+
+    @POST
+    @Path("form")
+    String withForm(@BeanParam FormBeanParam bean, @FormParam("note") String note);
+
+    @GET
+    @Path("formatted")
+    String withFormatted(@BeanParam FormattedBeanParam bean);
+
+    @GET
+    @Path("mapBean")
+    String withMapBean(@BeanParam MapBeanParam bean);
+
+    @GET
+    @Path("wide")
+    String withWideQuery(@BeanParam WideQueryBeanParam bean);
+
+    @GET
+    @Path("partial/{id1}")
+    String withPartialPath(@BeanParam PathBeanParam path, @BeanParam HeaderBeanParam headers);
+
+    @GET
+    @Path("envelope")
+    String withEnvelope(@BeanParam EnvelopeBeanParam bean);
+
+    @POST
+    @Path("compressed")
+    @CompressedBody(minimumSize = 64)
+    String withCompressedBody(@BeanParam QueryParamBean params, @BeanParam HeaderBeanParam headers, PostModelParam model);
+
+    @POST
+    @Path("deflated")
+    @CompressedBody(CompressedBody.Coding.DEFLATE)
+    String withDeflatedForm(@BeanParam FormBeanParam bean, @BeanParam HeaderBeanParam headers);
+
+    @POST
+    @Path("json")
+    @Consumes("application/json")
+    String withJsonBody(PostModelParam model);
+
+    @POST
+    @Path("text")
+    @Consumes("text/plain; charset=UTF-8")
+    String withTextBody(String text);
+
+    @GET
+    @Path("textQueryMap")
+    @Consumes("text/plain")
+    String withTextQueryMap(@QueryParam("map") Map<String, String> map);
+
+    interface ConflictingResource {
+        @GET
+        String withConflict(@BeanParam QueryParamBean first, @BeanParam QueryParamBean second);
+    }
+
+    interface ConflictingSetterResource {
+        @GET
+        String withConflict(@BeanParam QueryParamBean first, @BeanParam ExtendedSetterQueryParamBean second);
+    }
+
     class QueryParamBean {
         @QueryParam("one")
         String param1;
@@ -188,6 +258,29 @@ public interface QueryResource {
         }
     }
 
+    class EnvelopeBeanParam {
+        @QueryParam("q")
+        String query;
+        @BeanParam
+        PathBeanParam path;
+
+        public String getQuery() {
+            return query;
+        }
+
+        public void setQuery(String query) {
+            this.query = query;
+        }
+
+        public PathBeanParam getPath() {
+            return path;
+        }
+
+        public void setPath(PathBeanParam path) {
+            this.path = path;
+        }
+    }
+
     class MixedBeanParam {
         @PathParam("id2")
         int id;
@@ -248,4 +341,246 @@ public interface QueryResource {
             this.name = name;
         }
     }
+
+    class PagingBeanParam {
+        @QueryParam("offset")
+        Integer offset;
+        @QueryParam("limit")
+        Integer limit;
+
+        public Integer getOffset() {
+            return offset;
+        }
+
+        public void setOffset(Integer offset) {
+            this.offset = offset;
+        }
+
+        public Integer getLimit() {
+            return limit;
+        }
+
+        public void setLimit(Integer limit) {
+            this.limit = limit;
+        }
+    }
+
+    class FilterBeanParam {
+        @QueryParam("name")
+        String name;
+        @HeaderParam("tenant")
+        String tenant;
+        @BeanParam
+        PagingBeanParam paging;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getTenant() {
+            return tenant;
+        }
+
+        public void setTenant(String tenant) {
+            this.tenant = tenant;
+        }
+
+        public PagingBeanParam getPaging() {
+            return paging;
+        }
+
+        public void setPaging(PagingBeanParam paging) {
+            this.paging = paging;
+        }
+    }
+
+    class WideQueryBeanParam {
+        @QueryParam("a")
+        String a;
+        @QueryParam("b")
+        String b;
+        @QueryParam("c")
+        String c;
+        @QueryParam("d")
+        String d;
+        @QueryParam("e")
+        String e;
+        @QueryParam("f")
+        String f;
+
+        public String getA() {
+            return a;
+        }
+
+        public void setA(String a) {
+            this.a = a;
+        }
+
+        public String getB() {
+            return b;
+        }
+
+        public void setB(String b) {
+            this.b = b;
+        }
+
+        public String getC() {
+            return c;
+        }
+
+        public void setC(String c) {
+            this.c = c;
+        }
+
+        public String getD() {
+            return d;
+        }
+
+        public void setD(String d) {
+            this.d = d;
+        }
+
+        public String getE() {
+            return e;
+        }
+
+        public void setE(String e) {
+            this.e = e;
+        }
+
+        public String getF() {
+            return f;
+        }
+
+        public void setF(String f) {
+            this.f = f;
+        }
+    }
+
+    class NestedBeanParam {
+        @PathParam("id")
+        int id;
+        @BeanParam
+        FilterBeanParam filter;
+
+        public int getId() {
+            return id;
+        }
+
+        public void setId(int id) {
+            this.id = id;
+        }
+
+        public FilterBeanParam getFilter() {
+            return filter;
+        }
+
+        public void setFilter(FilterBeanParam filter) {
+            this.filter = filter;
+        }
+    }
+
+    class FormBeanParam {
+        @QueryParam("version")
+        String version;
+        @FormParam("name")
+        String name;
+        @FormParam("tags")
+        List<String> tags;
+
+        public String getVersion() {
+            return version;
+        }
+
+        public void setVersion(String version) {
+            this.version = version;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+
+    enum Status {
+        ACTIVE, ARCHIVED;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    class MapBeanParam {
+        @QueryParam("map")
+        Map<String, String> map;
+
+        public Map<String, String> getMap() {
+            return map;
+        }
+
+        public void setMap(Map<String, String> map) {
+            this.map = map;
+        }
+    }
+
+    class FormattedBeanParam {
+        @QueryParam("status")
+        Status status;
+        @QueryParam("statuses")
+        Status[] statuses;
+        @QueryParam("from")
+        LocalDate from;
+        @QueryParam("count")
+        long count;
+        @QueryParam("active")
+        boolean active;
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public void setStatus(Status status) {
+            this.status = status;
+        }
+
+        public Status[] getStatuses() {
+            return statuses;
+        }
+
+        public void setStatuses(Status[] statuses) {
+            this.statuses = statuses;
+        }
+
+        public LocalDate getFrom() {
+            return from;
+        }
+
+        public void setFrom(LocalDate from) {
+            this.from = from;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public void setActive(boolean active) {
+            this.active = active;
+        }
+    }
 }